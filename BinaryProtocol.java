@@ -0,0 +1,190 @@
+package cs671;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The compact binary form of the Boggle protocol.  A client opts
+ * into it by adding the option {@code binary} to its {@code JOIN}
+ * message (see {@code BoggleServer}); once the {@code JOIN} line is
+ * sent, both sides exchange frames instead of lines.  The text
+ * protocol remains the default.
+ *
+ * <p>A frame is made of its length, a type byte and a payload.  The
+ * length counts the type byte and the payload and is written as an
+ * unsigned variable-length integer: 7 bits per byte, least significant
+ * group first, with the high bit set on every byte but the last.  The
+ * type byte of a message of type {@code t} is {@code t.ordinal()+1},
+ * and its payload is the body of the message in UTF-8.
+ *
+ * <p>Words are numbered on each connection in the order the client
+ * submits them, starting at 0 (a {@code WORDS} message numbers its
+ * words one after the other).  A submitted word keeps the number of
+ * its first submission.  The results of submissions are sent as
+ * {@code RESULT} frames, whose payload is a sequence of (word number,
+ * status) pairs: the number as a variable-length integer, the status
+ * as the ordinal of a {@link WordResults.Status}.  The client, which
+ * knows what it submitted, never receives the words back.
+ *
+ * <p>An instance of this class holds the word numbers of one
+ * connection.  Words are numbered by the thread that reads from the
+ * connection and frames are encoded by the thread that writes to it.
+ *
+ * @author Chris Len
+ * @see WordResults
+ */
+public class BinaryProtocol {
+
+  /** Option of the {@code JOIN} message that selects this protocol. */
+  public static final String OPTION = "binary";
+
+  /** Type byte of frames that report on submitted words. */
+  public static final int RESULT = 0x40;
+
+  private static final BoggleMessage.Type[] TYPES = BoggleMessage.Type.values();
+
+  private final Map<String,Integer> ids = new ConcurrentHashMap<>();
+  private int nextId;
+
+  /** Type byte of messages of a given type.
+   *
+   * @param t the type of the message
+   * @return the type byte of its frames
+   */
+  public static int code (BoggleMessage.Type t) {
+    return t.ordinal() + 1;
+  }
+
+  /** Message type of a type byte.
+   *
+   * @param code the type byte of a frame
+   * @return the type, or {@code null} if the byte is not a message
+   * type (in particular, for {@code RESULT})
+   */
+  public static BoggleMessage.Type type (int code) {
+    return code >= 1 && code <= TYPES.length ? TYPES[code - 1] : null;
+  }
+
+  /** Number of bytes of an unsigned variable-length integer. */
+  static int varIntSize (int v) {
+    int n = 1;
+    while ((v >>>= 7) != 0)
+      n++;
+    return n;
+  }
+
+  /** Writes an unsigned variable-length integer. */
+  static void putVarInt (ByteBuffer b, int v) {
+    while ((v & ~0x7F) != 0) {
+      b.put((byte)((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    b.put((byte)v);
+  }
+
+  /** Reads an unsigned variable-length integer.
+   *
+   * @throws IOException if the input fails or the integer is too long
+   */
+  public static int readVarInt (DataInput in) throws IOException {
+    int v = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = in.readUnsignedByte();
+      v |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return v;
+    }
+    throw new IOException("Malformed frame length");
+  }
+
+  /** Reads an unsigned variable-length integer from a buffer.
+   *
+   * @throws java.nio.BufferUnderflowException if the buffer ends
+   * before the integer
+   */
+  public static int getVarInt (ByteBuffer b) {
+    int v = 0;
+    int shift = 0;
+    int x;
+    do {
+      x = b.get();
+      v |= (x & 0x7F) << shift;
+      shift += 7;
+    } while ((x & 0x80) != 0 && shift < 35);
+    return v;
+  }
+
+  /** Builds a frame.
+   *
+   * @param code the type byte
+   * @param payload the payload
+   * @return a buffer holding the frame, ready to be read
+   */
+  public static ByteBuffer frame (int code, byte[] payload) {
+    int length = payload.length + 1;
+    ByteBuffer b = ByteBuffer.allocate(varIntSize(length) + length);
+    putVarInt(b, length);
+    b.put((byte)code).put(payload);
+    b.flip();
+    return b;
+  }
+
+  /** Writes a message as a frame.  This is used by clients.
+   *
+   * @param m the message
+   * @param out where to write the frame
+   */
+  public static void write (BoggleMessage m, OutputStream out) throws IOException {
+    ByteBuffer b = m.encodeFrame();
+    byte[] bytes = new byte[b.remaining()];
+    b.get(bytes);
+    out.write(bytes);
+  }
+
+  /** Records a word submitted by the client and gives it the next
+   * number, unless it was submitted before.
+   *
+   * @param word the word, as received
+   */
+  public void submitted (String word) {
+    if (ids.putIfAbsent(word, nextId) == null)
+      nextId++;
+  }
+
+  /** Encodes a message for this connection.  Results on words that
+   * were all submitted by the client become a {@code RESULT} frame;
+   * other messages use the frame they share with all binary clients.
+   *
+   * @param m the message
+   * @return a buffer holding the frame, ready to be read
+   * @see BoggleMessage#encodeFrame
+   */
+  public ByteBuffer encode (BoggleMessage m) {
+    if (m instanceof WordResults) {
+      WordResults r = (WordResults)m;
+      int n = r.size();
+      int[] found = new int[n];
+      int length = 1;
+      for (int i = 0; i < n; i++) {
+        Integer id = ids.get(r.word(i));
+        if (id == null)
+          return m.encodeFrame(); // not one of ours; send the text
+        found[i] = id;
+        length += varIntSize(id) + 1;
+      }
+      ByteBuffer b = ByteBuffer.allocate(varIntSize(length) + length);
+      putVarInt(b, length);
+      b.put((byte)RESULT);
+      for (int i = 0; i < n; i++) {
+        putVarInt(b, found[i]);
+        b.put((byte)r.status(i).ordinal());
+      }
+      b.flip();
+      return b;
+    }
+    return m.encodeFrame();
+  }
+}
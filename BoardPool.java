@@ -0,0 +1,270 @@
+package cs671;
+
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/** Boards ready to be played.  A background thread rattles a board of
+ * the given size and dice, solves it and keeps the result, until a
+ * bounded number of boards are waiting.  A game then takes the next
+ * board without waiting for dice to be rolled or for the board to be
+ * solved; if the thread has fallen behind or was stopped, the board is
+ * made on the spot.
+ *
+ * <p>Boards can be required to contain a minimum number of words.
+ * Boards with fewer words are thrown away, but after {@code MAX_TRIES}
+ * boards in a row fail, the best of them is used, so that a minimum
+ * that the dice and dictionary can hardly reach does not hold games
+ * back.
+ *
+ * <p>A pool can be seeded.  Its boards then come in the same order on
+ * every run, which makes games reproducible.  For this, boards are
+ * numbered, and each one is rattled from dice seeded with its number
+ * and the seed of the pool, so that the thread and the games can make
+ * them outside of any lock and get the same boards.  A game that finds
+ * the pool empty makes the next board itself, rather than wait for the
+ * thread, which throws away its copy.  A stopped seeded pool keeps
+ * making seeded boards.
+ *
+ * <p>A pool can be shared by all the games that use the same board
+ * size, dice and dictionary.  Games take its boards in the order in
+ * which they begin, which depends on scheduling: with a seeded pool,
+ * the boards of a game can only be replayed if it is the only one
+ * using the pool, such as a server with a single room.
+ *
+ * @author Chris Len
+ * @see BoggleGameManager
+ */
+public class BoardPool {
+
+  /** Default number of boards kept ready. */
+  public static final int DEFAULT_CAPACITY = 8;
+
+  /** Boards tried in a row before one with too few words is used. */
+  public static final int MAX_TRIES = 100;
+
+  /** A rattled and solved board.  Boards are immutable. */
+  public static final class Board {
+    private final int width;
+    private final int height;
+    private final char[] letters;
+    private final SortedSet<String> words;
+    private final int maxScore;
+
+    Board (int width, int height, char[] letters, SortedSet<String> words) {
+      this.width = width;
+      this.height = height;
+      this.letters = letters;
+      this.words = Collections.unmodifiableSortedSet(words);
+      int score = 0;
+      for (String w : words)
+        score += SingleBoggleGame.score(w);
+      maxScore = score;
+    }
+
+    /** The letter at a given position. */
+    public char letterAt (int row, int col) {
+      return letters[row * width + col];
+    }
+
+    /** All the dictionary words on the board. */
+    public SortedSet<String> words () {
+      return words;
+    }
+
+    /** The score of a player who would find all the words. */
+    public int maxScore () {
+      return maxScore;
+    }
+
+    /** The board in the form used by {@code BOARD} messages:
+     * {@code "<width>x<height><letters>"}, row after row.
+     */
+    @Override
+    public String toString () {
+      return width + "x" + height + new String(letters);
+    }
+  }
+
+  /** Time to solve a board, in nanoseconds */
+  private static final Metrics.Histogram SOLVER = Metrics.shared().histogram("solver");
+
+  private final int width;
+  private final int height;
+  private final Die[] dice;
+  private final BoggleDictionary dict;
+  private final int minWords;
+  /** Whether the boards come from seeded dice */
+  private final boolean seeded;
+  private final long seed;
+  /** Boards ready; for a seeded pool, the boards numbered from {@code
+   * taken}, in order, and the lock of the numbers */
+  private final BlockingQueue<Board> ready;
+  /** For a seeded pool, the number of the next board handed out */
+  private long taken;
+  /** Board rattled by the thread of a pool that is not seeded */
+  private final DiceBoggleBoard generator;
+  private final Thread producer;
+  private volatile boolean running = true;
+
+  /** Creates a pool that keeps {@code DEFAULT_CAPACITY} boards ready
+   * and accepts all boards.
+   *
+   * @param w the width of the boards
+   * @param h the height of the boards
+   * @param d the dice
+   * @param dict the dictionary used to solve the boards
+   */
+  public BoardPool (int w, int h, Die[] d, BoggleDictionary dict) {
+    this(w, h, d, dict, DEFAULT_CAPACITY, 0);
+  }
+
+  /** Creates a pool and starts its thread, a daemon.
+   *
+   * @param w the width of the boards
+   * @param h the height of the boards
+   * @param d the dice
+   * @param dict the dictionary used to solve the boards
+   * @param capacity the number of boards kept ready
+   * @param minWords the minimum number of words of a board
+   * @throws IllegalArgumentException if the capacity is less than 1 or
+   * the board cannot be built
+   */
+  public BoardPool (int w, int h, Die[] d, BoggleDictionary dict, int capacity,
+                    int minWords) {
+    this(w, h, d, dict, capacity, minWords, 0, false);
+  }
+
+  /** Creates a seeded pool and starts its thread, a daemon.  Pools
+   * with the same dice, dictionary, minimum and seed make the same
+   * boards in the same order, whatever the timing of the games that
+   * take them.
+   *
+   * @param w the width of the boards
+   * @param h the height of the boards
+   * @param d the dice
+   * @param dict the dictionary used to solve the boards
+   * @param capacity the number of boards kept ready
+   * @param minWords the minimum number of words of a board
+   * @param seed the seed of the random generator
+   * @throws IllegalArgumentException if the capacity is less than 1 or
+   * the board cannot be built
+   */
+  public BoardPool (int w, int h, Die[] d, BoggleDictionary dict, int capacity,
+                    int minWords, long seed) {
+    this(w, h, d, dict, capacity, minWords, seed, true);
+  }
+
+  private BoardPool (int w, int h, Die[] d, BoggleDictionary dict, int capacity,
+                     int minWords, long seed, boolean seeded) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be positive");
+    width = w;
+    height = h;
+    dice = d.clone();
+    this.dict = dict;
+    this.minWords = minWords;
+    this.seeded = seeded;
+    this.seed = seed;
+    ready = new ArrayBlockingQueue<>(capacity);
+    generator = new DiceBoggleBoard(w, h, d);
+    producer = new Thread(new Runnable() {
+        @Override
+        public void run () {
+          produce();
+        }
+      }, "board-pool");
+    producer.setDaemon(true);
+    producer.start();
+  }
+
+  /** The next board.  It is taken from the pool if one is ready and
+   * made by the calling thread otherwise; the next board of a seeded
+   * pool is made from the seeded dice of its number, even if the
+   * thread is making it too.
+   *
+   * @return a rattled and solved board
+   */
+  public Board next () {
+    if (!seeded) {
+      Board b = ready.poll();
+      return b != null ? b : make(new DiceBoggleBoard(width, height, dice));
+    }
+    long n;
+    synchronized (ready) {
+      Board b = ready.poll();
+      n = taken++;
+      ready.notify(); // room for the thread
+      if (b != null)
+        return b;
+    }
+    return make(board(n));
+  }
+
+  /** The dictionary used to solve the boards. */
+  public BoggleDictionary getDictionary () {
+    return dict;
+  }
+
+  /** The number of boards ready. */
+  public int size () {
+    return ready.size();
+  }
+
+  /** Stops the thread that fills the pool.  Boards are then made on
+   * demand. */
+  public void stop () {
+    running = false;
+    producer.interrupt();
+  }
+
+  private void produce () {
+    try {
+      while (running) {
+        if (!seeded) {
+          ready.put(make(generator));
+          continue;
+        }
+        long n;
+        synchronized (ready) {
+          while (running && ready.remainingCapacity() == 0)
+            ready.wait();
+          n = taken + ready.size();
+        }
+        if (!running)
+          break;
+        Board b = make(board(n));
+        synchronized (ready) { // unless a game made it meanwhile
+          if (n == taken + ready.size())
+            ready.add(b);
+        }
+      }
+    } catch (InterruptedException e) {
+      // stopped
+    }
+  }
+
+  /** The seeded dice of the board of a given number */
+  private DiceBoggleBoard board (long n) {
+    return new DiceBoggleBoard(width, height, dice, seed + n * 0x9E3779B97F4A7C15L);
+  }
+
+  /** Rattles and solves a board until it has enough words */
+  private Board make (DiceBoggleBoard board) {
+    Board best = null;
+    for (int i = 0; i < MAX_TRIES; i++) {
+      board.rattle();
+      char[] letters = board.letters; // replaced, never changed, by rattle
+      long start = System.nanoTime();
+      SortedSet<String> words = board.allWords(dict);
+      SOLVER.record(System.nanoTime() - start);
+      Board b = new Board(width, height, letters, words);
+      if (words.size() >= minWords)
+        return b;
+      if (best == null || words.size() > best.words.size())
+        best = b;
+    }
+    return best;
+  }
+}
@@ -7,6 +7,11 @@ import java.util.TreeSet;
 /** Boggle board super class which contains getter and setter methods and 
  *  implements the algorithms 
  *
+ * <p>Searches keep their state in per-call buffers of the solver, and
+ * subclasses replace the letters array as a whole instead of updating
+ * it in place, so that a board can be searched by several threads at
+ * the same time without locking.
+ *
  * @author Chris Len
  * @version 2.0, 02/27/13
  */
@@ -15,14 +20,14 @@ public class BoggleBoardMain implements BoggleBoard {
     protected final int width;
     /** Save value of the height of the board */
     protected final int height;
-    /** Save value of the characters on the board */
-    protected char[][] letters;
+    /** Save value of the characters on the board, row after row.  The
+     * array is never modified once published; changes go to a copy
+     * which then replaces it. */
+    protected volatile char[] letters;
     /** 2-d array of the dice on the board */
     protected Die[][] board;
-    /** boolean 2-d array corresponds to the board, used to determine if a letters lisited */
-    protected boolean[][] marked;
-    /** Set which contains all words that have been founds in the dictionary */
-    protected SortedSet<String> set;
+    /** Search engine used to find strings and words on the board */
+    protected final BoggleSolver solver;
 
     /** Creates a new board.  The board has the specified dimensions
    * and uses <em>copies</em> of the dice given in argument.  If
@@ -44,8 +49,8 @@ public class BoggleBoardMain implements BoggleBoard {
     height = h;
       
     board = new Die[height][width];
-    letters = new char[height][width];
-    marked = new boolean[height][width];
+    char[] grid = new char[height*width];
+    solver = new BoggleSolver(w, h);
   
     Die[] copyLoc = new Die[d.length];
     for(int i = 0; i < d.length; i++) {
@@ -56,12 +61,12 @@ public class BoggleBoardMain implements BoggleBoard {
     int count = 0;
     for(int row = 0; row < h; row++) {
         for(int col = 0; col < w; col++) {
-        letters[row][col] = copyLoc[count].top();
+        grid[row*width + col] = copyLoc[count].top();
         board[row][col] = copyLoc[count++];
-        marked[row][col] = false;
         if(count >= d.length) { count = 0; }
       }    
     }   
+    letters = grid;
   }
     
    /** Builds a fixed board.  The array of letters must contain
@@ -78,23 +83,14 @@ public class BoggleBoardMain implements BoggleBoard {
       
       width = w;
       height = h;
+      solver = new BoggleSolver(w, h);
       
       if(letters.length != w*h) {
           System.err.println("Not enough characters given!");
           return;
       }
       
-      this.letters = new char[h][w];
-      marked = new boolean[height][width];
-
-      
-      int count = 0;
-      for(int row = 0; row < h; row++) {
-          for(int col = 0; col < w; col++) {
-              this.letters[row][col] = letters[count++];
-              marked[row][col] = false;
-          }
-      }
+      this.letters = letters.clone();
   }
 
     @Override
@@ -103,7 +99,7 @@ public class BoggleBoardMain implements BoggleBoard {
         System.err.println("Invalid coordinate: " + row + ", " + col);
         return '\0';
     }
-    return letters[row][col];
+    return letters[row*width + col];
   }
 
     @Override
@@ -116,62 +112,27 @@ public class BoggleBoardMain implements BoggleBoard {
     return height;
   }
 
-    @Override
-  public boolean containsString (String string) {
-    if(string.isEmpty()) { return true; }
-    for(int row = 0; row < height; row++) {
-      for(int col = 0; col < width; col++) {
-        if(searchContain(row, col, string)) {
-            return true;
-        }
-      }    
-    } 
-    return false;
-  }
-    
-    
-  /**
-   * Helper function for determining if a string is on the board
-   * @param row Row on the board
-   * @param col Col on the board
-   * @param search String to determine if it is on the board
-   * @return true is contained
+  /** Sets the size from which this board is solved in parallel by
+   * {@code allWords}.
+   *
+   * @param cells the minimum number of cells for a parallel search
+   * @return the previous threshold
+   * @see BoggleSolver#setParallelThreshold
    */
-  private boolean searchContain(int row, int col, String search) {
-    if(row >= height || row < 0 || col >= width || col < 0) {
-        return false;
-    }
-    
-    if(search.isEmpty()) { return true; }
+  public int setParallelThreshold (int cells) {
+    return solver.setParallelThreshold(cells);
+  }
 
-    if(search.charAt(0) != letters[row][col] || marked[row][col]) {
-        return false;
-    }
-    String newSearch = search.substring(1);
-    marked[row][col] = true;
-    
-    for (int r = -1; r <= 1; r++) {
-        for (int c = -1; c <= 1; c++) {
-            if(searchContain(row + r, col + c, newSearch)) {
-                marked[row][col] = false;
-                return true;
-            }
-        }
-     }
-    marked[row][col] = false;
-    return false;
+    @Override
+  public boolean containsString (String string) {
+    return solver.containsString(letters, string);
   }
 
     @Override
   public SortedSet<String> allWords (BoggleDictionary dict) {
     // Orders the set first based on length then alphabetically
-    set = new TreeSet<>(new SET_SORT());
-    for(int row = 0; row < height; row++) {
-      for(int col = 0; col < width; col++) {
-        searchAll(row, col, "", dict);
-      }
-    }
-    
+    SortedSet<String> set = new TreeSet<>(new SET_SORT());
+    solver.allWords(letters, dict, set);
     return set;
   }
     
@@ -192,43 +153,14 @@ public class BoggleBoardMain implements BoggleBoard {
         }
     }
   }
-
-  /**
-   * 
-   * @param row Row on the board we are at
-   * @param col Col on the board we are at
-   * @param search String which has been populated so far
-   * @param dict String dictionary
-   */
-  private void searchAll(int row, int col, String search, BoggleDictionary dict) {
-    if(row >= height || row < 0 || col >= width || col < 0) {
-        return;
-    }
-    if(marked[row][col]) {
-        return;
-    }
-    search += letters[row][col];
-    
-    if(dict.hasWord(search)) {
-        set.add(search);
-    }
-    if(dict.hasPrefix(search)) {
-     marked[row][col] = true;
-     for (int r = -1; r <= 1; r++) {
-        for (int c = -1; c <= 1; c++) {
-           searchAll(row + r, col + c, search, dict);
-        }
-     }
-     marked[row][col] = false;
-    }
-  }
   
     @Override
   public String toString() {
     StringBuilder b = new StringBuilder();
+    char[] grid = letters;
     for(int row = 0; row < height; row++) {
         for(int col = 0; col < width; col++) {
-            b.append(letters[row][col]).append(" ");
+            b.append(grid[row*width + col]).append(" ");
         }
         b.append("\n");
     }
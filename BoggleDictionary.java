@@ -1,44 +1,315 @@
 package cs671;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /** A dictionary, specialized for the Boggle game.  In addition to
  * usual word lookup, a dictionary offers a prefix lookup to decide
  * if a string is a prefix of an existing word.  In this class, a
- * dictionary is implemented as a sorted array of words (a better
- * implementation would use tries).  Method <code>find</code> is
- * implemented as a single binary search, and <code>hasWord</code> and
- * <code>hasPrefix</code> are implemented in terms of
- * <code>find</code> (a call to <code>find</code> should be used
- * preferably to a call to <code>hasWord</code> <em>and</em> a call to
- * <code>hasPrefix</code>.)  Dictionary words are stored in capital
- * letters; a word/prefix that contains lowercase letters will never
- * be found.
+ * dictionary is implemented as a directed acyclic word graph (a trie
+ * in which identical suffix trees are shared) stored as a flat buffer
+ * of integers outside of the Java heap.  Methods <code>find</code>,
+ * <code>hasWord</code> and <code>hasPrefix</code> walk the graph one
+ * letter at a time.
+ *
+ * <p>Solvers that extend a string one letter at a time should use
+ * a <em>cursor</em> instead: {@code root} returns the cursor of the
+ * empty string and {@code advance} moves a cursor by one letter in
+ * constant time, so that the word/prefix state of each extension is
+ * available without searching again from the start of the string.
+ * Cursors are plain integers and do not allocate.
+ *
+ * <p>A dictionary can be saved as a binary <em>snapshot</em> and
+ * loaded back with {@code load}, which maps the file in memory: the
+ * graph is used in place, without parsing or sorting any word.
+ *
+ * <p>Dictionary words are stored in capital letters; a word/prefix
+ * that contains lowercase letters will never be found.  Words that
+ * contain characters other than 'A' to 'Z' are ignored.
  *
  * @author Michel Charpentier
  * @version 2.0, 02/27/13
- * @see Arrays#binarySearch(Object[],Object)
+ * @see #advance
+ * @see DictionaryCompiler
  */
 public class BoggleDictionary implements Iterable<String> {
 
-  private final String[] dict;
-  private final java.util.ArrayList<String> col;
-          
+  /** The cursor of a string that is neither a word nor a prefix of
+   * a word.  Advancing a dead cursor always returns {@code DEAD}.
+   */
+  public static final int DEAD = -1;
+
+  /** Flag set in the first slot of a node that ends a word. */
+  private static final int WORD = 1 << 31;
+  /** Mask of the letter bits in the first slot of a node. */
+  private static final int LETTERS = (1 << 26) - 1;
+
+  /** Usual file name suffix of dictionary snapshots. */
+  public static final String SNAPSHOT_SUFFIX = ".dict";
+
+  /** Snapshot layout: five big-endian integers (magic number,
+   * version, number of words, length of the shortest word, number
+   * of nodes) followed by the nodes, two integers each. */
+  private static final int MAGIC = 0x42444943; // "BDIC"
+  private static final int VERSION = 1;
+  private static final int HEADER = 5 * 4;
+
+  /** Two slots per node: letters of the children (bit 0 is 'A') plus
+   * the {@code WORD} flag, then the index of the first child.
+   * Children of a node are contiguous and stored in letter order.
+   * Nodes are edges of the word graph: a block of children can be
+   * shared by several parents. */
+  private final IntBuffer nodes;
+  private final int size;
+  private final int minLength;
+
   /** Constructs a new dictionary by iterating over a collection of words.
    *
    * @param c a collections of words
    */
   public BoggleDictionary (java.util.Collection<String> c) {
-    dict = new String[c.size()];
-    col = new java.util.ArrayList<>(c);
-    Collections.sort(col);
-    int i = 0;
-    for(String s : col) {
-        dict[i++] = s;
+    this(c.toArray(new String[0]));
+  }
+
+  /** Constructs a new dictionary from an array of words, in any order
+   * and possibly with duplicates.  The array is used as scratch space
+   * and its content is lost.
+   *
+   * @param words an array of words
+   * @see WordListLoader
+   */
+  BoggleDictionary (String[] words) {
+    int n = 0;
+    int shortest = Integer.MAX_VALUE;
+    for (String s : words) {
+      if (isUpperCase(s)) {
+        words[n++] = s;
+        shortest = Math.min(shortest, s.length());
+      }
+    }
+    Arrays.sort(words, 0, n);
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      if (count == 0 || !words[i].equals(words[count-1])) {
+        words[count++] = words[i];
+      }
+    }
+    size = count;
+    minLength = count == 0 ? 0 : shortest;
+    int[] graph = minimize(build(words, count));
+    nodes = ByteBuffer.allocateDirect(graph.length * 4)
+      .order(ByteOrder.nativeOrder()).asIntBuffer();
+    nodes.put(graph);
+  }
+
+  private BoggleDictionary (IntBuffer nodes, int size, int minLength) {
+    this.nodes = nodes;
+    this.size = size;
+    this.minLength = minLength;
+  }
+
+  /** Loads a dictionary snapshot.  The file is mapped in memory and
+   * used as is, once the links between its nodes are checked; the
+   * dictionary is ready for lookups as soon as this method returns.
+   *
+   * @param f a file written by {@code save}
+   * @return the dictionary stored in the file
+   * @throws IOException if the file cannot be read, is not a
+   * dictionary snapshot or is damaged
+   * @see #save
+   */
+  public static BoggleDictionary load (File f) throws IOException {
+    ByteBuffer buf;
+    try (FileChannel ch = FileChannel.open(f.toPath())) {
+      buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+    if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC) {
+      throw new IOException("Not a dictionary snapshot: " + f);
+    }
+    if (buf.getInt(4) != VERSION) {
+      throw new IOException("Unsupported snapshot version: " + buf.getInt(4));
+    }
+    int size = buf.getInt(8);
+    int minLength = buf.getInt(12);
+    int count = buf.getInt(16);
+    if (count < 1 || buf.capacity() != HEADER + 8L * count) {
+      throw new IOException("Truncated dictionary snapshot: " + f);
     }
+    buf.position(HEADER);
+    IntBuffer nodes = buf.slice().asIntBuffer();
+    if (!isGraph(nodes, count)) {
+      throw new IOException("Corrupt dictionary snapshot: " + f);
+    }
+    return new BoggleDictionary(nodes, size, minLength);
+  }
+
+  /** Whether the nodes form a graph that {@code minimize} could have
+   * written, so that a damaged snapshot fails to load instead of
+   * failing a lookup or looping forever.  The root is node 0 and every
+   * block of children comes after the root and before any node that
+   * points to it, which makes the graph acyclic. */
+  private static boolean isGraph (IntBuffer nodes, int count) {
+    for (int i = 0; i < count; i++) {
+      int slot = nodes.get(2 * i);
+      if ((slot & ~(WORD | LETTERS)) != 0) { return false; }
+      int children = Integer.bitCount(slot & LETTERS);
+      if (children > 0) {
+        int first = nodes.get(2 * i + 1);
+        long end = (long)first + children;
+        if (first < 1 || end > (i == 0 ? count : i)) { return false; }
+      }
+    }
+    return true;
+  }
+
+  /** Writes a snapshot of this dictionary.
+   *
+   * @param out the stream to write to; it is not closed
+   * @throws IOException if the snapshot cannot be written
+   * @see #load
+   */
+  public void save (OutputStream out) throws IOException {
+    DataOutputStream data
+      = new DataOutputStream(new java.io.BufferedOutputStream(out, 1 << 16));
+    int length = nodes.capacity();
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(size);
+    data.writeInt(minLength);
+    data.writeInt(length / 2);
+    for (int i = 0; i < length; i++) {
+      data.writeInt(nodes.get(i));
+    }
+    data.flush();
+  }
+
+  private static boolean isUpperCase (String s) {
+    for (int i = 0, l = s.length(); i < l; i++) {
+      char c = s.charAt(i);
+      if (c < 'A' || c > 'Z') { return false; }
+    }
+    return true;
+  }
+
+  /** Lays the trie out breadth-first so that the children of each
+   * node get consecutive indexes.  Node {@code i} covers the range
+   * {@code words[lo[i]..hi[i])} of words that share its prefix. */
+  private static int[] build (String[] words, int n) {
+    int[] lo = new int[64];
+    int[] hi = new int[64];
+    int[] depth = new int[64];
+    int[] trie = new int[128];
+    lo[0] = 0;
+    hi[0] = n;
+    depth[0] = 0;
+    int count = 1;
+    for (int i = 0; i < count; i++) {
+      int l = lo[i];
+      int h = hi[i];
+      int d = depth[i];
+      int slot = 0;
+      if (l < h && words[l].length() == d) {
+        slot = WORD;
+        l++;
+      }
+      int first = count;
+      while (l < h) {
+        char c = words[l].charAt(d);
+        int j = l + 1;
+        while (j < h && words[j].charAt(d) == c) { j++; }
+        if (count == lo.length) {
+          lo = Arrays.copyOf(lo, count * 2);
+          hi = Arrays.copyOf(hi, count * 2);
+          depth = Arrays.copyOf(depth, count * 2);
+        }
+        lo[count] = l;
+        hi[count] = j;
+        depth[count] = d + 1;
+        count++;
+        slot |= 1 << (c - 'A');
+        l = j;
+      }
+      if (2 * i + 2 > trie.length) {
+        trie = Arrays.copyOf(trie, trie.length * 2);
+      }
+      trie[2 * i] = slot;
+      trie[2 * i + 1] = first;
+    }
+    return Arrays.copyOf(trie, 2 * count);
+  }
+
+  /** Shares identical subtrees of a breadth-first trie.  Nodes are
+   * visited from the last one up, so that the children of a node are
+   * always done first.  Two nodes are equivalent if they have the
+   * same slot and equivalent children; the children of a node form a
+   * block, and identical blocks are stored only once.  Each node of
+   * the result is a copy of a trie node inside a block, pointing to
+   * the (shared) block of its own children. */
+  private static int[] minimize (int[] trie) {
+    int count = trie.length / 2;
+    int[] blockOf = new int[count];
+    Map<String,Integer> blocks = new HashMap<>();
+    java.util.List<String> keys = new java.util.ArrayList<>();
+    StringBuilder key = new StringBuilder();
+    for (int i = count - 1; i >= 0; i--) {
+      int k = Integer.bitCount(trie[2 * i] & LETTERS);
+      if (k == 0) {
+        blockOf[i] = -1;
+        continue;
+      }
+      key.setLength(0);
+      for (int j = trie[2 * i + 1], end = j + k; j < end; j++) {
+        appendInt(key, trie[2 * j]);
+        appendInt(key, blockOf[j]);
+      }
+      String b = key.toString();
+      Integer id = blocks.get(b);
+      if (id == null) {
+        id = keys.size();
+        blocks.put(b, id);
+        keys.add(b);
+      }
+      blockOf[i] = id;
+    }
+    // Root first, then every block, in order of creation
+    int[] offset = new int[keys.size()];
+    int length = 1;
+    for (int b = 0; b < offset.length; b++) {
+      offset[b] = length;
+      length += keys.get(b).length() / 4;
+    }
+    int[] graph = new int[2 * length];
+    graph[0] = trie[0];
+    graph[1] = blockOf[0] < 0 ? 0 : offset[blockOf[0]];
+    for (int b = 0; b < offset.length; b++) {
+      String k = keys.get(b);
+      for (int e = 0, n = k.length() / 4; e < n; e++) {
+        int node = offset[b] + e;
+        int child = readInt(k, 4 * e + 2);
+        graph[2 * node] = readInt(k, 4 * e);
+        graph[2 * node + 1] = child < 0 ? 0 : offset[child];
+      }
+    }
+    return graph;
+  }
+
+  private static void appendInt (StringBuilder b, int i) {
+    b.append((char)(i >>> 16)).append((char)i);
+  }
+
+  private static int readInt (String s, int index) {
+    return (s.charAt(index) << 16) | s.charAt(index + 1);
   }
 
   /** An iterator over the dictionary.  Words are returned in
@@ -48,11 +319,131 @@ public class BoggleDictionary implements Iterable<String> {
    */
     @Override
   public Iterator<String> iterator () {
-    return col.iterator();
+    return new WordIterator();
+  }
+
+  /**
+   * Depth-first walk of the trie.  The stack holds, for each level,
+   * the node and the letters of that node that remain to be visited.
+   */
+  private class WordIterator implements Iterator<String> {
+    private int[] stackNode = new int[16];
+    private int[] stackLeft = new int[16];
+    private char[] path = new char[16];
+    private int top = 0;
+    private String next;
+
+    WordIterator () {
+      stackNode[0] = 0;
+      stackLeft[0] = nodes.get(0) & LETTERS;
+      if ((nodes.get(0) & WORD) != 0) { next = ""; }
+      else { advanceToWord(); }
+    }
+
+    private void advanceToWord () {
+      next = null;
+      while (top >= 0) {
+        int left = stackLeft[top];
+        if (left == 0) {
+          top--;
+          continue;
+        }
+        int bit = left & -left;
+        stackLeft[top] = left ^ bit;
+        int node = stackNode[top];
+        int child = nodes.get(2 * node + 1)
+          + Integer.bitCount(nodes.get(2 * node) & (bit - 1));
+        if (top + 1 == stackNode.length) {
+          stackNode = Arrays.copyOf(stackNode, stackNode.length * 2);
+          stackLeft = Arrays.copyOf(stackLeft, stackLeft.length * 2);
+          path = Arrays.copyOf(path, path.length * 2);
+        }
+        path[top] = (char)('A' + Integer.numberOfTrailingZeros(bit));
+        top++;
+        stackNode[top] = child;
+        stackLeft[top] = nodes.get(2 * child) & LETTERS;
+        if ((nodes.get(2 * child) & WORD) != 0) {
+          next = new String(path, 0, top);
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext () {
+      return next != null;
+    }
+
+    @Override
+    public String next () {
+      if (next == null) { throw new NoSuchElementException(); }
+      String s = next;
+      advanceToWord();
+      return s;
+    }
+
+    @Override
+    public void remove () {
+      throw new UnsupportedOperationException();
+    }
   }
 
-  /** Word/prefix lookup.  This is implemented as a single binary
-   * search, so this method should be preferred to
+  /** The cursor of the empty string.  Every lookup starts from this
+   * cursor.
+   *
+   * @return the root cursor
+   * @see #advance
+   */
+  public int root () {
+    return 0;
+  }
+
+  /** Extends a cursor by one letter.  This takes constant time.
+   *
+   * @param cursor the cursor of a string {@code s}
+   * @param letter the letter to append to {@code s}
+   * @return the cursor of {@code s+letter}, or {@code DEAD} if that
+   * string is neither a word nor a prefix of a word
+   */
+  public int advance (int cursor, char letter) {
+    if (cursor < 0) { return DEAD; }
+    int l = letter - 'A';
+    if (l < 0 || l >= 26) { return DEAD; }
+    int slot = nodes.get(2 * cursor);
+    int bit = 1 << l;
+    if ((slot & bit) == 0) { return DEAD; }
+    return nodes.get(2 * cursor + 1) + Integer.bitCount(slot & (bit - 1));
+  }
+
+  /** Whether the string of a cursor is a dictionary word.
+   *
+   * @param cursor a cursor
+   * @return true iff the cursor denotes a word
+   */
+  public boolean isWord (int cursor) {
+    return cursor >= 0 && (nodes.get(2 * cursor) & WORD) != 0;
+  }
+
+  /** Whether the string of a cursor can be extended into a longer
+   * dictionary word.
+   *
+   * @param cursor a cursor
+   * @return true iff advancing the cursor can lead to a word
+   */
+  public boolean isPrefix (int cursor) {
+    return cursor >= 0 && (nodes.get(2 * cursor) & LETTERS) != 0;
+  }
+
+  private int walk (String string) {
+    int cursor = root();
+    for (int i = 0, l = string.length(); i < l && cursor >= 0; i++) {
+      cursor = advance(cursor, string.charAt(i));
+    }
+    return cursor;
+  }
+
+  /** Word/prefix lookup.  This is implemented as a single walk down
+   * the trie, so this method should be preferred to
    * <code>hasWord</code> and <code>hasPrefix</code> when both
    * answers are needed.
    *
@@ -62,15 +453,11 @@ public class BoggleDictionary implements Iterable<String> {
    * negative value otherwise.
    * @see #hasWord
    * @see #hasPrefix
-   * @see Arrays#binarySearch(Object[],Object)
    */
   public int find (String string) {
-    int index = Arrays.binarySearch(dict, string);
-    if(index >= 0) { return 1; }
-    int newIndex = (index+1) * -1; // index is now where it would be inserted
-    if(newIndex < dict.length && dict[newIndex].startsWith(string)){ 
-        return 0;
-    }
+    int cursor = walk(string);
+    if (isWord(cursor)) { return 1; }
+    if (isPrefix(cursor)) { return 0; }
     return -1;
   }
 
@@ -79,7 +466,16 @@ public class BoggleDictionary implements Iterable<String> {
    * @return the number of words in the dictionary
    */
   public int size () {
-    return dict.length;
+    return size;
+  }
+
+  /** Length of the shortest word in the dictionary.
+   *
+   * @return the length of the shortest word, or 0 if the dictionary
+   * is empty
+   */
+  public int minLength () {
+    return minLength;
   }
 
   /** Whether the given string is a word in the dictionary.
@@ -89,21 +485,9 @@ public class BoggleDictionary implements Iterable<String> {
    * @see #find
    */
   public boolean hasWord (String word) {
-    return Arrays.binarySearch(dict, word) >= 0;
-  }
-
-  
-  class CMP_PRE implements Comparator<String> {
-        @Override
-        public int compare(String o1, String o2) {
-            if(o1.startsWith(o2)) {
-                return 0;
-            }
-            else {
-                return o1.compareTo(o2);
-            }
-        }
+    return isWord(walk(word));
   }
+
   /** Whether the given string is a prefix of a word in the
    * dictionary.  Note that if the string is a dictionary word, the
    * method returns true.
@@ -114,6 +498,7 @@ public class BoggleDictionary implements Iterable<String> {
    * @see #find
    */
   public boolean hasPrefix (String prefix ) {
-    return Arrays.binarySearch(dict, prefix, new CMP_PRE()) >= 0;
+    int cursor = walk(prefix);
+    return isWord(cursor) || isPrefix(cursor);
   }
 }
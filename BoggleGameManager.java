@@ -1,7 +1,19 @@
 package cs671;
 
 import java.util.ArrayList;
-import java.util.Timer;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /** A Boggle game manager.  A game manager's responsibilities
  * include: build a board, send it to connected players, check words
@@ -9,28 +21,60 @@ import java.util.Timer;
  * also manages timers to force games to start or to finish after a
  * given delay.
  *
- * <p>Instances of this class are thread-safe.
+ * <p>A game manager is driven by commands, which are passed to
+ * {@link #execute} and run one at a time, in order, on a single logical
+ * thread (see {@code Mailbox}).  The methods that change the state of
+ * the game ({@code remove}, {@code submitWord}, {@code submitWords},
+ * {@code start}, {@code beginGame}, {@code stop}, {@code endGame},
+ * {@code setTimer}) must be called from such commands.  Timers are
+ * deadlines on a wheel shared by all the games (see {@code
+ * TimerWheel}) and post a command when they expire.  Since nothing
+ * else touches the state, it needs no locking.  Players are indexed
+ * by name in a concurrent map, so that {@code register} can be called
+ * from any thread: of two players who join at the same time with the
+ * same name, only one gets in.  The queries {@code playing} and
+ * {@code playerCount} can also be called from any thread and return a
+ * recent value.
  *
  *
  * @author Michel Charpentier
  * @version 2.0, 02/27/13
  */
 public class BoggleGameManager {
-    private final int width;
-    private final int height;
     private final BoggleDictionary dict;
-    private final Die[] die;
-    private final char[] letters;
-    private final BoggleBoard board;
-    private final Timer timer;
-    private ArrayList<Player> players;
-    private ArrayList<BogglePlayer> bogglePlayers;
-    private boolean playing = false;
-    private int delay = 20000; // intial delay is 20000 ms or 20 seconds
+    /** Boards rattled and solved ahead of the games */
+    private final BoardPool boards;
+    /** The board of the current or last game; null before the first */
+    private volatile BoardPool.Board board;
+    /** Deadlines of all the games */
+    private final TimerWheel timers = TimerWheel.shared();
+    /** The pending start or end deadline, if any */
+    private Deadline deadline;
+    /** One session per registered player, by case-folded name */
+    private final ConcurrentMap<String,Session> sessions = new ConcurrentHashMap<>();
+    private volatile boolean playing = false;
+    /** Commands of this game, run one at a time */
+    private final Mailbox mailbox;
+    /** Timer delay; read by newRoom from the threads that create rooms */
+    private volatile int delay = 20; // intial delay is 20 seconds
     /** Determines is a new game should start as soon as the current one ends */
     private boolean newGameStart = false;
-    private int [] score;
-    private ArrayList<WordPack> wordsSubmitted;
+    /** Words found by players who left the current game */
+    private final BitSet departed = new BitSet();
+    /** Players of the current game who are still there, in order */
+    private final List<Session> participants = new ArrayList<>();
+    /** Announcements that never change, encoded once for all games */
+    private static final BoggleMessage GAME_STARTING
+        = new BoggleMessage(BoggleMessage.Type.TEXT, "Game is starting!");
+    private static final BoggleMessage GAME_ENDING
+        = new BoggleMessage(BoggleMessage.Type.TEXT, "Game is ending!");
+    /** Dictionary lookups of all the games, for words not on the board */
+    private static final Metrics.Counter LOOKUPS = Metrics.shared().counter("dictionary.lookups");
+    /** All the dictionary words on the board, computed when a game
+     * begins, each with a dense identifier */
+    private volatile Map<String,Integer> solutions = Collections.emptyMap();
+    /** Points of each word on the board, by identifier */
+    private int[] points = new int[0];
     
   /** Creates a new game manager.
    *
@@ -40,41 +84,164 @@ public class BoggleGameManager {
    * @param d the dice
    */
   public BoggleGameManager (int w, int h, BoggleDictionary dict, Die[] d) {
-    width = w;
-    height = h;
-    this.dict = dict;
-    die = d;
-    board = new DiceBoggleBoard(w, h, d);
-    timer = new Timer(true);
-    
-    letters = new char[w*h];
+    this(new BoardPool(w, h, d, dict));
+  }
 
-    for(int i = 0; i < w*h; i++) {
-        letters[i] = d[i%d.length].top();
-    }
-      
-    players = new ArrayList<>();
-    bogglePlayers = new ArrayList<>();
-    wordsSubmitted = new ArrayList<>();
+  /** Creates a new game manager that plays the boards of a pool.
+   * Pools can be shared by several managers.  No board is taken until
+   * the first game begins, so creating a manager never waits for one.
+   *
+   * @param boards the pool of boards, with their dictionary
+   */
+  public BoggleGameManager (BoardPool boards) {
+    this.boards = boards;
+    dict = boards.getDictionary();
+    mailbox = new Mailbox(ForkJoinPool.commonPool());
   }
   
-  class WordPack {
-      private String word;
-      private String name;
-      
-      public WordPack(String word, String name) {
-          this.word = word;
-          this.name = name;
-      }
-      
-      public String getWord(){ 
-          return word;
+  /** Runs a command on the game's thread.  Commands run one at a time,
+   * in the order they are submitted, and never wait for each other's
+   * locks; this method returns immediately.
+   *
+   * @param command the command
+   */
+  public void execute (Runnable command) {
+    mailbox.post(command);
+  }
+
+  /** Sets the executor that runs the commands of this game.  By
+   * default, the common fork-join pool is used.
+   * @param executor the executor
+   */
+  void setExecutor (Executor executor) {
+    mailbox.setExecutor(executor);
+  }
+
+  /** Creates a manager for another game with the same boards, from the
+   * same pool, and timer delay.
+   * @return a new game manager
+   * @see RoomRegistry
+   */
+  BoggleGameManager newRoom () {
+    BoggleGameManager g = new BoggleGameManager(boards);
+    g.setTimer(delay);
+    return g;
+  }
+
+  /** A registered player and its part in the game.  Messages sent to
+   * the session go to the player.
+   */
+  class Session implements BogglePlayer {
+      final BogglePlayer player;
+      boolean ready;
+      boolean playing;
+      boolean quitting;
+      /** Identifiers of the words found in the current game */
+      final BitSet found = new BitSet();
+      /** Score of the last game */
+      int score;
+
+      Session(BogglePlayer player) {
+          this.player = player;
       }
-      
+
+      @Override
       public String getName() {
-          return name;
+          return player.getName();
+      }
+
+      @Override
+      public void sendMessage(BoggleMessage msg) {
+          player.sendMessage(msg);
+      }
+  }
+
+  /** A start or end deadline.  When it expires, it posts a command to
+   * the game, which ignores it if the deadline was cancelled or
+   * replaced in the meantime.
+   */
+  private class Deadline implements Runnable {
+      final boolean begin;
+      final TimerWheel.Timeout timeout;
+
+      Deadline(boolean begin) {
+          this.begin = begin;
+          timeout = timers.schedule(this, delay, TimeUnit.SECONDS);
+      }
+
+      @Override
+      public void run() { // on the ticker thread
+          execute(new Runnable() {
+              @Override
+              public void run() {
+                  expired(Deadline.this);
+              }
+          });
+      }
+  }
+
+  /** Sets the start or end deadline, replacing the current one */
+  private void setDeadline(boolean begin) {
+      cancelDeadline();
+      if(delay > 0) {
+          deadline = new Deadline(begin);
+      }
+  }
+
+  private void cancelDeadline() {
+      if(deadline != null) {
+          deadline.timeout.cancel();
+          deadline = null;
+      }
+  }
+
+  private void expired(Deadline d) {
+      if(deadline != d) {
+          return;
+      }
+      deadline = null;
+      if(!d.begin) {
+          endGame(true);
+          return;
+      }
+      for(Session t : sessions.values()) {
+          if(t.ready) { // not if all the ready players left
+              beginGame(true);
+              return;
+          }
+      }
+  }
+
+  /** Key of a name in the player index; names that only differ by
+   * case have the same key */
+  private static String key(String name) {
+      return name.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+  }
+
+  /** Computes the scores of the current game.  A word scores only for
+   * a player who is alone in finding it: the words found by at least
+   * two players are the union, over all players, of the words each one
+   * shares with the players before it.  Players who did not take part
+   * in the game keep the score of their last one.
+   */
+  private void score() {
+      BitSet seen = (BitSet)departed.clone();
+      BitSet shared = new BitSet();
+      for(Session t : participants) {
+          BitSet both = (BitSet)t.found.clone();
+          both.and(seen);
+          shared.or(both);
+          seen.or(t.found);
+      }
+      for(Session t : participants) {
+          BitSet alone = (BitSet)t.found.clone();
+          alone.andNot(shared);
+          int total = 0;
+          for(int i = alone.nextSetBit(0); i >= 0; i = alone.nextSetBit(i + 1)) {
+              total += points[i];
+          }
+          t.score = total;
       }
-      
   }
 
   /** Whether a game is currently on.
@@ -84,14 +251,10 @@ public class BoggleGameManager {
       return playing;
   }
 
-  private Player findPlayer(BogglePlayer p) {
-      Player temp = null;
-      for(Player t : players) {
-          if(t.getName().equals(p.getName())) {
-              temp = t;
-          }
-      }
-      return temp;
+  /** The session of a registered player, or null */
+  private Session findPlayer(BogglePlayer p) {
+      Session s = sessions.get(key(p.getName()));
+      return s != null && s.player == p ? s : null;
   }
   
   /** Whether a player is currently playing a game.
@@ -101,36 +264,29 @@ public class BoggleGameManager {
    * participant in that game
    */
   public boolean isPlaying (BogglePlayer p) {
-    Player pl = findPlayer(p);
+    Session pl = findPlayer(p);
     if(pl == null) { return false; }
 
-    return playing && pl.isPlaying();
+    return playing && pl.playing;
   }
 
   /** Adds a player.  The player is not added if its name is already in
    * use.  For convenience, name comparison is case insensitive (i.e.,
    * "John" and "john" are the same player).  The added player is
    * initially "passive", i.e., registered but not wanting to play a
-   * game.
+   * game.  Unlike the other methods that change the game, this one
+   * can be called from any thread.
    *
    * @param p the player to add
    * @return true iff player {@code p} is effectively registered
    */
   public boolean register (BogglePlayer p) {
-    String name = p.getName();
-    
-    // Look through players to make sure name does not already exist
-    for(Player pl : players) {
-        if(name.equalsIgnoreCase(pl.getName())) {
-            return false;
-        }
+    // Atomic, so that two players cannot get in with the same name
+    if(sessions.putIfAbsent(key(p.getName()), new Session(p)) != null) {
+        return false;
     }
-    Player newPlayer = new Player(p.getName());
-    newPlayer.register();
     p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
-            "Player + " + p.getName() + " is registered"));
-    players.add(newPlayer);
-    bogglePlayers.add(p);
+            "Player " + p.getName() + " is registered"));
     return true;
   }
 
@@ -142,39 +298,48 @@ public class BoggleGameManager {
    * @return true iff the player is effectively removed
    */
   public boolean remove (BogglePlayer p) {
-    Player gone = findPlayer(p);
+    Session gone = findPlayer(p);
     if(gone == null) { return false; }    
-    boolean ret = players.remove(gone) && bogglePlayers.remove(p);
-    // NEED TO CHECK TO SEE IF ALL REMAINING PLAYERS ARE READY/DONE
+    boolean ret = sessions.remove(key(p.getName()), gone);
+    if(playing && gone.playing) { // the words still count as duplicates
+        departed.or(gone.found);
+        participants.remove(gone);
+    }
+    // The player may have been the one everybody was waiting for
     if(playing) {
-        // need to see if everyone is now wanting to end
+        endGame(false);
     }
-    else {
-        // need to see if everyone is now ready to play
+    else if(!sessions.isEmpty()) {
+        beginGame(false);
     }
     
     return ret;
   }
 
+  /** The board of the current game or, between games, of the last
+   * one, with its words.
+   * @return the board, or {@code null} if no game has begun yet
+   */
+  public BoardPool.Board getBoard () {
+    return board;
+  }
+
   /** The board, as a string.
    * @return a string of the form {@code "<width>x<height><letters>"}.
    * Letters are listed from the top row to the bottom row and each
-   * row is enumerated from left to right.
+   * row is enumerated from left to right; {@code null} if no game has
+   * begun yet.
    */
   public String getBoardString () {
-    StringBuilder s = new StringBuilder();
-    s.append(width).append("x").append(height);
-    for(char c : letters) {
-        s.append(c);
-    }
-    return s.toString();
+    BoardPool.Board b = board;
+    return b == null ? null : b.toString();
   }
 
   /** The number of connected players (whether they are currently
    * playing or not).
    */
   public int playerCount () {
-    return players.size();
+    return sessions.size();
   }
 
   /** Whether a player is registered with the server.
@@ -183,56 +348,109 @@ public class BoggleGameManager {
    * @return true iff the player is registered
    */
   public boolean isRegistered (BogglePlayer p) {
-    Player temp = findPlayer(p);
-    if(temp == null) {
-        return false;
-    }
-    return temp.isRegistered();
+    return findPlayer(p) != null;
   }
 
   /** Submits a word.  The word is submitted in the name of player
    * {@code p}.  If there is no game on or {@code p} is not part of
    * the current game, the submission is rejected and the player is
-   * notified.
+   * notified.  A player cannot submit the same word twice.  The board
+   * is solved once when a game begins, so that valid words are
+   * accepted with a single hash lookup; the dictionary is only
+   * consulted to explain rejections.  Found words are recorded as bits
+   * over the words of the board.
    *
    * @param p the player submitting the word
    * @param word the word submitted, in upper case
    * @see BogglePlayer#sendMessage
    */
   public void submitWord (BogglePlayer p, String word) {
-    Player play = findPlayer(p);
+    Session play = findPlayer(p);
     if(play == null) {
         return;
     }
-    
-    for(WordPack w : wordsSubmitted) {
-        if(w.getWord() == word) {
-            p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
-                "Word submission rejected! " + word + " already submitted by " + p.getName()));
-            return;
-        }
-    }
-   
-    if(!isPlaying(play)) {
+    Integer id;
+    if(!playing || !play.playing) {
         // Notify player that game is not being played
-        p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
-                "Word submission rejected! Player " + play.getName() + " is not playing"));
+        p.sendMessage(new WordResults(
+                "Word submission rejected! Player " + play.getName() + " is not playing",
+                word, WordResults.Status.NOT_PLAYING));
+        return;
     }
-    else if(!dict.hasWord(word)) {
-        p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
-                "Word " + word + " is not in the dictionary"));
+    if((id = solutions.get(word)) == null) {
+        LOOKUPS.increment();
+        if(!dict.hasWord(word)) {
+            p.sendMessage(new WordResults(
+                "Word " + word + " is not in the dictionary",
+                word, WordResults.Status.NOT_IN_DICTIONARY));
+        }
+        else {
+            p.sendMessage(new WordResults(
+                "Word " + word + " is not on the board",
+                word, WordResults.Status.NOT_ON_BOARD));
+        }
     }
-    else if(!board.containsString(word)) {
-        p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
-                "Word " + word + " is not on the board"));
+    else if(play.found.get(id)) {
+        p.sendMessage(new WordResults(
+                "Word submission rejected! " + word + " already submitted by " + p.getName(),
+                word, WordResults.Status.ALREADY_SUBMITTED));
     }
     else {
+        play.found.set(id);
+        p.sendMessage(new WordResults(
+                "Word " + word + " is found by " + p.getName(),
+                word, WordResults.Status.FOUND));
+    }
+  }
+
+  /** Submits several words at once.  The words are checked together
+   * and the player gets a single message listing the words found and
+   * the words rejected, with the reason of each rejection.  A word
+   * already found by this player, including earlier in the batch, is
+   * rejected.  If there is no game on or {@code p} is not
+   * part of the current game, the whole batch is rejected.
+   *
+   * @param p the player submitting the words
+   * @param words the words submitted, in upper case
+   * @see #submitWord
+   */
+  public void submitWords (BogglePlayer p, Collection<String> words) {
+    Session play = findPlayer(p);
+    if(play == null) {
+        return;
+    }
+    if(!playing || !play.playing) {
         p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
-                "Word " + word + " is found by " + p.getName()));
-        WordPack w = new WordPack(word, p.getName());
-        wordsSubmitted.add(w);
+                "Word submission rejected! Player " + play.getName() + " is not playing"));
+        return;
     }
-    
+    String[] checked = words.toArray(new String[0]);
+    WordResults.Status[] status = new WordResults.Status[checked.length];
+    StringBuilder found = new StringBuilder();
+    StringBuilder rejected = new StringBuilder();
+    for(int i = 0; i < checked.length; i++) {
+        String word = checked[i];
+        Integer id = solutions.get(word);
+        if(id == null) {
+            LOOKUPS.increment();
+            status[i] = dict.hasWord(word) ? WordResults.Status.NOT_ON_BOARD
+                : WordResults.Status.NOT_IN_DICTIONARY;
+        }
+        else if(play.found.get(id)) {
+            status[i] = WordResults.Status.ALREADY_SUBMITTED;
+        }
+        else {
+            play.found.set(id);
+            status[i] = WordResults.Status.FOUND;
+            found.append(' ').append(word);
+            continue;
+        }
+        rejected.append(rejected.length() == 0 ? " " : ", ").append(word)
+                .append(" (").append(status[i].description()).append(')');
+    }
+    p.sendMessage(new WordResults(
+            "Words found by " + p.getName() + ":" + found + "; rejected:" + rejected,
+            checked, status));
   }
 
   /** Indicates that player {@code p} wants to play.  All registered
@@ -254,36 +472,37 @@ public class BoggleGameManager {
    * @see BogglePlayer#sendMessage
    */
   public void start (BogglePlayer p) {
-    Player play = findPlayer(p);
+    Session play = findPlayer(p);
     if(play == null) {
         p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
                 "Player " + p.getName() + " is not registered with server"));
         return;
     }
+    if(playing && play.playing) {
+        p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT,
+                "Player " + play.getName() + " is already in the game"));
+        return;
+    }
     
     boolean allPlayersReady = true;
-    play.setReady(true);
-    for(BogglePlayer t : bogglePlayers) {
-        t.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
-                "Player " + play.getName() + " is now ready to play"));
-    }
-    for(Player t : players) {
-        if(!t.isReady()) {
+    play.ready = true;
+    new BoggleMessage(BoggleMessage.Type.TEXT,
+        "Player " + play.getName() + " is now ready to play").broadcast(sessions.values());
+    for(Session t : sessions.values()) {
+        if(!t.ready) {
             allPlayersReady = false;
             break;
         }
     }
     
-    if(allPlayersReady) { // start the game
+    if(playing) { // dont start timer till current game is over
+        newGameStart = true;
+    }
+    else if(allPlayersReady) { // start the game
         beginGame(true);
     }
-    else { // start timer
-        if(playing) { // dont start timer till current game is over
-            newGameStart = true;
-        }
-        else {
-            //timer.
-        }
+    else if(deadline == null) { // start timer
+        setDeadline(true);
     }
   }
 
@@ -292,40 +511,50 @@ public class BoggleGameManager {
    * true}, a game starts even it some registered players are not
    * ready.  These players are not included in the game.  If a game is
    * actually started, the board is sent to all participating players
-   * and the method returns {@code true}.
+   * and the method returns {@code true}.  The board is the next one of
+   * the pool, already rattled and solved.
    *
    * @see BogglePlayer#sendMessage
    */
   public boolean beginGame (boolean force) {
     boolean allPlayersReady = true;
     if(!playing) {
-        for(Player t : players) {
-            if(!t.isReady()) {
+        for(Session t : sessions.values()) {
+            if(!t.ready) {
                 allPlayersReady = false;
                 break;
             }
         }
         if(allPlayersReady || force) { // end game
-            for(BogglePlayer t : bogglePlayers) {
-                t.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT,
-                    "Game is starting!"));
+            // Number the words of the board; submissions are checked
+            // against them
+            board = boards.next();
+            Set<String> words = board.words();
+            Map<String,Integer> ids = new HashMap<>(words.size() * 2);
+            points = new int[words.size()];
+            for(String w : words) {
+                points[ids.size()] = SingleBoggleGame.score(w);
+                ids.put(w, ids.size());
             }
-            for(Player t : players) {
-                if(t.isReady()) {
-                    t.setPlaying(true);
-                    t.setQuit(false);
+            solutions = ids;
+            departed.clear();
+            setDeadline(false); // the game lasts the timer delay at most
+            GAME_STARTING.broadcast(sessions.values());
+            participants.clear();
+            for(Session t : sessions.values()) {
+                t.found.clear();
+                if(t.ready) {
+                    t.playing = true;
+                    t.quitting = false;
+                    participants.add(t);
                 }
             }
             playing = true;
+            // send board to all players in the game
+            new BoggleMessage(BoggleMessage.Type.BOARD, board.toString()).broadcast(participants);
+            return true;
         }
     }
-    else { // send board to all players
-        for(BogglePlayer t : bogglePlayers) {
-            t.sendMessage(new BoggleMessage(BoggleMessage.Type.BOARD,
-                width + "x" + height + letters));
-        }
-        return true;
-    }
     return false;
   }
 
@@ -340,7 +569,7 @@ public class BoggleGameManager {
    * @see BogglePlayer#sendMessage
    */
   public void stop (BogglePlayer p) {
-    Player play = findPlayer(p);
+    Session play = findPlayer(p);
     if(play == null) {
         p.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
             "Player " + p.getName() + " was not registered"));
@@ -348,13 +577,11 @@ public class BoggleGameManager {
     }
     boolean allPlayersReady = true;
     
-    play.setQuit(true);
-    for(BogglePlayer t : bogglePlayers) {
-        t.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT, 
-                "Player " + play.getName() + " wants the game to be over"));
-    }
-    for(Player t : players) {
-        if(!t.isQuitting()) {
+    play.quitting = true;
+    new BoggleMessage(BoggleMessage.Type.TEXT,
+        "Player " + play.getName() + " wants the game to be over").broadcast(sessions.values());
+    for(Session t : sessions.values()) {
+        if(!t.quitting) {
             allPlayersReady = false;
             break;
         }
@@ -362,10 +589,7 @@ public class BoggleGameManager {
     if(allPlayersReady) { // end game
         endGame(true);
     }
-    else { // have timer get ready to end game
-        
-    }
-    
+    // otherwise, the end deadline set when the game began ends it
   }
 
   /** Ends a game.  If a game is currently running and all the players
@@ -373,68 +597,61 @@ public class BoggleGameManager {
    * boolean {@code force} is {@code true}, the game stops even it
    * some players are not ready.  If a game is actually stopped,
    * scores are sent to players and the method returns {@code true}.
+   * Duplicates are found with a few operations on the bit sets of
+   * found words, whatever the number of submissions.
    *
    * @see BogglePlayer#sendMessage
    */
   public boolean endGame (boolean force) {
     boolean allPlayersReady = true;
     if(playing) {
-        for(Player t : players) {
-            if(!t.isQuitting()) {
+        for(Session t : sessions.values()) {
+            if(!t.quitting) {
                 allPlayersReady = false;
                 break;
             }
         }
         if(allPlayersReady || force) { // end game
-            for(BogglePlayer t : bogglePlayers) {
-                t.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT,
-                    "Game is ending!"));
-            }  
-            System.err.println("Game is over");
-            for(Player t : players) {
-                t.setPlaying(false);
-                t.setReady(false);
-                t.setQuit(false);
-            } 
-            score = new int[bogglePlayers.size()];
-            for(int i = 0; i < bogglePlayers.size(); i++) {
-                for(int j = 0; j < wordsSubmitted.size(); j++) {
-                    WordPack w = wordsSubmitted.get(i);
-                    String word = w.getWord();
-                    String name = w.getName();
-                    boolean dup = false;
-                    System.out.println("words sub " + wordsSubmitted.size());
-                    for(WordPack wp : wordsSubmitted) {
-                        if(wp.getWord().equals(word) && !wp.getName().equals(name)) { // duplicate found
-                            dup = true;
-                            break;
-                        }
-                    }
-                    if(!dup) {
-                        score[i] += SingleBoggleGame.score(word);
-                    }
+            cancelDeadline();
+            GAME_ENDING.broadcast(sessions.values());
+            score();
+            for(Session t : sessions.values()) {
+                if(t.playing) { // others stay ready for the next game
+                    t.ready = false;
                 }
+                t.playing = false;
+                t.quitting = false;
+            } 
+            // One score board for everybody, encoded once
+            StringBuilder scores = new StringBuilder("Scores:");
+            String sep = " ";
+            for(Session t : sessions.values()) {
+                scores.append(sep).append(t.getName()).append(" ").append(t.score);
+                sep = ", ";
             }
-            for(int i = 0; i < bogglePlayers.size(); i++) {
-                bogglePlayers.get(i).sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT,
-                        bogglePlayers.get(i).getName() + " score: " + score[i]));
-            }
+            new BoggleMessage(BoggleMessage.Type.TEXT, scores.toString()).broadcast(sessions.values());
             playing = false;
+            if(newGameStart) { // players asked to play during the game
+                newGameStart = false;
+                setDeadline(true);
+            }
         }
     }
     else {
-        for(int i = 0; i < bogglePlayers.size(); i++) {
-            bogglePlayers.get(i).sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT,
-                "Game is over. Your score is " + score[i]));
+        for(Session t : sessions.values()) {
+            t.sendMessage(new BoggleMessage(BoggleMessage.Type.TEXT,
+                "Game is over. Your score is " + t.score));
         }
         return true;
     }
     return false;
   }
 
-  /** Sets the delay for timers.  A value of 0 means timers are killed.
-   * Otherwise, the value becomes the delay used to start or
-   * to end games when not all players are ready.
+  /** Sets the delay for timers.  A value of 0 means timers are killed:
+   * the pending deadline is cancelled and no other one is set until
+   * the delay is changed again.  Otherwise, the value becomes the
+   * delay used to start or to end games when not all players are
+   * ready.
    *
    * @param seconds the new delay, in seconds
    * @return the previous timer value
@@ -443,7 +660,7 @@ public class BoggleGameManager {
       int old = delay;
       delay = seconds;
       if(seconds == 0) {
-          timer.cancel();
+          cancelDeadline();
       }
       return old;
   }
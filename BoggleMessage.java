@@ -1,7 +1,9 @@
 package cs671;
 
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /** Implements the messages used in the boggle protocol.  The protocol
  * is described in the description of class {@code BoggleServer}.
@@ -43,7 +45,12 @@ public class BoggleMessage {
       WORD,
       /** To finish a game (client -> server)
        */
-      END
+      END,
+      /** To submit several words at once (client -> server).  The
+       * body of a message of type {@code WORDS} is the list of words,
+       * separated by spaces.
+       */
+      WORDS
       }
 
   /** The 'header' (or 'type') or this message. */
@@ -54,6 +61,11 @@ public class BoggleMessage {
    */
   public final String body;
 
+  /** The message as a line of UTF-8 bytes, encoded on first use */
+  private volatile ByteBuffer encoded;
+  /** The message as a binary frame, encoded on first use */
+  private volatile ByteBuffer frame;
+
   /** Message constructor.  This builds a new instance with the given
    * header and body.  If the body contains newlines, they are
    * replaced by whitespaces.
@@ -80,6 +92,56 @@ public class BoggleMessage {
     return type+String.valueOf(SEPARATOR)+body;
   }
 
+  /** The bytes of this message as sent on the wire: the string
+   * representation followed by a newline, in UTF-8.  The message is
+   * encoded once; every call returns a new read-only view of the same
+   * bytes, so that the writers of many connections can each consume
+   * their own view concurrently.
+   *
+   * @return a read-only buffer positioned at the start of the line
+   */
+  public ByteBuffer encode () {
+    ByteBuffer b = encoded;
+    if (b == null) {
+      b = ByteBuffer.wrap((toString()+"\n").getBytes(StandardCharsets.UTF_8))
+        .asReadOnlyBuffer();
+      encoded = b;
+    }
+    return b.duplicate();
+  }
+
+  /** The bytes of this message as a frame of the binary protocol.
+   * Like {@code encode}, the frame is built once and every call
+   * returns a new read-only view of it.
+   *
+   * @return a read-only buffer positioned at the start of the frame
+   * @see BinaryProtocol
+   */
+  public ByteBuffer encodeFrame () {
+    ByteBuffer b = frame;
+    if (b == null) {
+      b = BinaryProtocol.frame(BinaryProtocol.code(type),
+                               body.getBytes(StandardCharsets.UTF_8))
+        .asReadOnlyBuffer();
+      frame = b;
+    }
+    return b.duplicate();
+  }
+
+  /** Sends this message to several players.  The same instance goes to
+   * every player, and it is encoded before the first one is reached,
+   * so the wire form is built once per broadcast rather than once per
+   * recipient.
+   *
+   * @param players the recipients
+   * @see #encode
+   */
+  public void broadcast (Iterable<? extends BogglePlayer> players) {
+    encode();
+    for (BogglePlayer p : players)
+      p.sendMessage(this);
+  }
+
   /** Message equality. */
   @Override public boolean equals (Object o) {
     if (o instanceof BoggleMessage) {
@@ -94,24 +156,79 @@ public class BoggleMessage {
     return 17 * type.hashCode() + body.hashCode();
   }
 
-  private static final Pattern msg =
-    Pattern.compile("([^"+SEPARATOR+"]*)"+SEPARATOR+"(.*)");
+  /** The type named by part of a header, found with a switch over its
+   * length and first character rather than {@code Type.valueOf}.
+   *
+   * @param s the characters holding the header
+   * @param start index of the first character of the header
+   * @param end index after the last character of the header
+   * @return the type, or {@code null} if no type has this name
+   */
+  static Type type (CharSequence s, int start, int end) {
+    Type t;
+    switch (end - start) {
+    case 3:
+      t = Type.END;
+      break;
+    case 4:
+      switch (s.charAt(start)) {
+      case 'J': t = Type.JOIN; break;
+      case 'P': t = Type.PLAY; break;
+      case 'T': t = Type.TEXT; break;
+      case 'W': t = Type.WORD; break;
+      default: return null;
+      }
+      break;
+    case 5:
+      t = s.charAt(start) == 'W' ? Type.WORDS : Type.BOARD;
+      break;
+    default:
+      return null;
+    }
+    String name = t.name();
+    for (int i = 0; i < name.length(); i++)
+      if (s.charAt(start + i) != name.charAt(i))
+        return null;
+    return t;
+  }
+
+  /** Utility method to split the body of a {@code WORDS} message into
+   * words.  Words are separated by one or more spaces.
+   *
+   * @param body the body of the message
+   * @return the words, in order
+   */
+  public static List<String> words (CharSequence body) {
+    List<String> words = new ArrayList<>();
+    int n = body.length();
+    int i = 0;
+    while (i < n) {
+      while (i < n && body.charAt(i) == ' ')
+        i++;
+      int start = i;
+      while (i < n && body.charAt(i) != ' ')
+        i++;
+      if (i > start)
+        words.add(body.subSequence(start, i).toString());
+    }
+    return words;
+  }
 
   /** Utility method to parse a string into a message.
    *
    * @param s a string to parse
    * @return a new message based on the parsed string
    * @throws Message.Exception if the string cannot be parsed into a message
+   * @see MessageParser
    */
   public static BoggleMessage parse (String s) throws BoggleMessage.Exception {
-    Matcher m = msg.matcher(s);
-    if (m.matches())
-      try {
-        return new BoggleMessage(Type.valueOf(m.group(1)),m.group(2));
-      } catch (IllegalArgumentException e) {
-        throw new BoggleMessage.Exception("Unknown message type: "+s);
-      }
-    throw new BoggleMessage.Exception("Missing separator");
+    int sep = s.indexOf(SEPARATOR);
+    if (sep < 0)
+      throw new BoggleMessage.Exception("Missing separator");
+    Type t = type(s, 0, sep);
+    if (t == null)
+      throw new BoggleMessage.Exception("Unknown message type: "+s);
+    return new BoggleMessage(t, s.substring(sep + 1));
   }
 
   /** Message related exception.  This exception occurs when a
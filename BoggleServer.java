@@ -1,24 +1,27 @@
 package cs671;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** A multi-threaded server for the Boggle game.  This server
  * implements the server side of the Boggle protocol described below.
  *
  * <p>Messages are made of 2 parts: a header and a body, separated by
- * a colon (:).  There are 6 different headers: <tt>BOARD</tt>,
- * <tt>TEXT</tt>, <tt>JOIN</tt>, <tt>PLAY</tt>, <tt>WORD</tt> and
- * <tt>END</tt>.</p>
+ * a colon (:).  There are 7 different headers: <tt>BOARD</tt>,
+ * <tt>TEXT</tt>, <tt>JOIN</tt>, <tt>PLAY</tt>, <tt>WORD</tt>,
+ * <tt>WORDS</tt> and <tt>END</tt>.</p>
  *
  * <p>From server to client:
  * <ul>
@@ -38,7 +41,14 @@ import java.util.Set;
  * <li><tt><b>JOIN</b></tt>: the player wants to join the server.  The
  * body of the message is the player's name.  It cannot be an empty
  * string.  This must be the first message sent by a client to the
- * server to initiate a connection.</li>
+ * server to initiate a connection.  The name can be followed by
+ * options, each one preceded by a semicolon (;).  The option
+ * <tt>room=</tt><i>name</i> joins the named game room, which is
+ * created if needed; players who do not name a room join the room
+ * <tt>lobby</tt>.  Each room is a separate game.  The option
+ * <tt>binary</tt> selects the binary protocol described in
+ * {@link BinaryProtocol}: after the <tt>JOIN</tt> line, the client
+ * and the server exchange frames instead of lines.</li>
  *
  * <li><tt><b>PLAY</b></tt>: the player is ready to play.  The body of
  * this message is an empty string.  A game starts when all the
@@ -48,29 +58,80 @@ import java.util.Set;
  * The body of the message is the word being submitted, in uppercase.
  * A player cannot submit words before a game has started.</li>
  *
+ * <li><tt><b>WORDS</b></tt>: the player submits several words at once.
+ * The body of the message is the list of words, in uppercase,
+ * separated by spaces.  The words are checked together and the server
+ * answers with a single <tt>TEXT</tt> message listing the words found
+ * and the words rejected.</li>
+ *
  * <li><tt><b>END</b></tt>: the player is ready to end the game.  The
  * body of this message is an empty string.  A game ends when all the
  * players are ready to end, or after a timeout.</li>
  * </ul>
  * </p> 
  *
+ * <p>Messages to a client are queued and written by a separate writer
+ * task of the connection, so that a slow client never blocks the
+ * thread that sends to it.  With virtual threads, each connection has
+ * a writer thread of its own; otherwise, a connection only has its
+ * reader thread, and its messages are written by a pooled thread while
+ * some are waiting.  Each queue is bounded; when it is full,
+ * old <tt>TEXT</tt> messages are dropped, or the client is
+ * disconnected (see {@link #setOutboundLimit}).</p>
+ *
  * @author Michel Charpentier
  * @version 2.0, 02/27/13
  */
 public class BoggleServer {
+    /** Separates the name from the options in a JOIN message */
+    static final char OPTION_SEPARATOR = ';';
+    /** JOIN option naming the room to join */
+    static final String ROOM_OPTION = "room=";
+    /** Connections accepted by all the server engines */
+    static final Metrics.Counter ACCEPTED = Metrics.shared().counter("connections.accepted");
+    /** Latency of each type of message from clients, by ordinal */
+    private static final Metrics.Histogram[] LATENCY
+        = new Metrics.Histogram[BoggleMessage.Type.values().length];
+    static {
+        BoggleMessage.Type[] handled = {BoggleMessage.Type.JOIN, BoggleMessage.Type.PLAY,
+            BoggleMessage.Type.WORD, BoggleMessage.Type.WORDS, BoggleMessage.Type.END};
+        for(BoggleMessage.Type t : handled) {
+            LATENCY[t.ordinal()] = Metrics.shared()
+                .histogram("latency." + t.name().toLowerCase(java.util.Locale.ROOT));
+        }
+    }
     /** Port number used to connect the server */
     private final int port;
-    /** BoggleGameManager used to play game */
-    private final BoggleGameManager game;
+    /** Game rooms of the server */
+    private final RoomRegistry rooms;
     
     /** Determines if server is allowed to accept new connecitons */
-    private boolean running;
+    private volatile boolean running;
     /** Makes sure start can not be double called */
     private boolean serverRunning = false;
     /** ServerSocket used to connect to clients */
     private ServerSocket listener = null;
     /** Lock to synchronized code */
     private final Object lock;
+    /** Whether connections are handled by virtual threads */
+    private final boolean virtualThreads;
+    /** Runs one ServerClass per connection */
+    private ExecutorService connections;
+    /** Writes the messages of connections that have no writer thread */
+    private final ExecutorService writers = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Boggle writer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    /** Players of the live connections */
+    private final Set<QueuedPlayer> players = ConcurrentHashMap.newKeySet();
+    /** Size of the outbound queue of each connection */
+    private volatile int queueCapacity = OutboundQueue.DEFAULT_CAPACITY;
+    /** What to do when an outbound queue is full */
+    private volatile OutboundQueue.Overflow overflow = OutboundQueue.Overflow.DROP_OLDEST_TEXT;
     
   /** Creates a server
    *
@@ -78,55 +139,119 @@ public class BoggleServer {
    * @param g a game manager
    */
   public BoggleServer (int port, BoggleGameManager g) {
+    this(port, g, false);
+  }
+
+  /** Creates a server that optionally handles each connection on a
+   * virtual thread.  Virtual threads need Java 21 or later; on older
+   * platforms, platform threads are used instead.
+   *
+   * @param port the port number ([0..65535])
+   * @param g a game manager
+   * @param virtualThreads whether to use virtual threads
+   */
+  public BoggleServer (int port, BoggleGameManager g, boolean virtualThreads) {
+    this(port, new RoomRegistry(g), virtualThreads);
+  }
+
+  /** Creates a server that hosts several game rooms.
+   *
+   * @param port the port number ([0..65535])
+   * @param rooms the rooms, whose default room is used by players who
+   * do not name one
+   * @param virtualThreads whether to use virtual threads
+   */
+  public BoggleServer (int port, RoomRegistry rooms, boolean virtualThreads) {
     this.port = port;
-    game = g;
+    this.rooms = rooms;
+    this.virtualThreads = virtualThreads;
     
     lock = new Object();
   }
 
+  /** Sets the limits of the outbound queues of new connections.
+   *
+   * @param capacity the number of messages a queue can hold
+   * @param policy what to do when a queue is full
+   * @throws IllegalArgumentException if the capacity is less than 1
+   */
+  public void setOutboundLimit (int capacity, OutboundQueue.Overflow policy) {
+    if(capacity < 1) { throw new IllegalArgumentException("Capacity must be at least one"); }
+    queueCapacity = capacity;
+    overflow = policy;
+  }
+
+  /** The players currently connected, with their outbound queues.
+   *
+   * @return a live, read-only view of the players
+   */
+  public Collection<? extends QueuedPlayer> getConnections () {
+    return Collections.unmodifiableSet(players);
+  }
+
   /** Starts listening and accepting connections. */
   public void start () throws java.io.IOException {
-    if(!serverRunning) {
-        if(listener == null) {
+    synchronized(lock) {
+        if(serverRunning) {
+            return;
+        }
+        if(listener == null || listener.isClosed()) {
             listener = new ServerSocket(port);
         }
-        new Thread(new ClientListener()).start();
-    }
-
-    synchronized(lock) {
+        connections = newConnectionExecutor();
+        registerGauges(rooms, players);
         serverRunning = true;
         running = true;
     }
+    new Thread(new ClientListener(), "Boggle listener").start();
+  }
+
+  /**
+   * Executor used to run connection handlers: one virtual thread per
+   * connection if requested and available, platform threads otherwise
+   * @return a new executor
+   */
+  private ExecutorService newConnectionExecutor() {
+    if(virtualThreads) {
+        try {
+            // Looked up reflectively so the server still builds on older JDKs
+            return (ExecutorService)Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException e) {
+            System.err.println("Virtual threads not available; using platform threads");
+        }
+    }
+    return Executors.newCachedThreadPool();
   }
   
   /**
-   * Run by a thread, wait for new connections, creates a new player on new 
-   * thread if connection(client) is established 
+   * Run by a thread, wait for new connections, hands each connection
+   * (client) that is established to the connection executor.  No lock is
+   * held while waiting, so stop can close the listener to end the wait.
    */
   class ClientListener implements Runnable {
     @Override
     public void run() {
-        Socket server;
+        ServerSocket socket = listener;
+        ExecutorService executor = connections;
         try {
-            synchronized(lock) {
-                while(running) {
-                    server = listener.accept();
-                    Player cp = new Player();
-                    Thread t = new Thread(new ServerClass(server, cp));
-                    t.start();
-                }
+            while(running) {
+                Socket server = socket.accept();
+                ACCEPTED.increment();
+                executor.execute(new ServerClass(server, executor));
             }
         }
         catch(Exception | Error e) {
-            System.err.println("Failed on port "  + port);
+            if(running) {
+                System.err.println("Failed on port "  + port);
+            }
         }
         finally {
-            if(listener != null) {
-                try {
-                    listener.close();
-                } 
-                catch (IOException ex) { }
-            }
+            try {
+                socket.close();
+            } 
+            catch (IOException ex) { }
         }    
     }
   }
@@ -137,64 +262,51 @@ public class BoggleServer {
    */
   class ServerClass implements Runnable {
     private Socket socket;
-    BufferedReader in;
-    PrintWriter out;
-    Player cp;
+    InputStream in;
+    OutputStream out;
+    SocketPlayer cp;
+    /** Runs the writer of this connection */
+    private final ExecutorService executor;
+    private final Writer writer = new Writer();
     
-    public ServerClass(Socket s, Player p) {
+    public ServerClass(Socket s, ExecutorService e) {
         socket = s;
-        cp = p;
+        executor = e;
+        cp = new SocketPlayer();
     }
     
     @Override
     public void run() {
-        boolean calledJoin = false;
         try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), true);
+            in = socket.getInputStream();
+            out = socket.getOutputStream();
+            players.add(cp);
+            if(virtualThreads) { // a thread of its own is cheap
+                executor.execute(writer);
+            }
 
-            String line;
+            MessageParser parser = new MessageParser();
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            read:
             while(true) {
-                line = getLine();
-                if(line == null) {
+                int n = getBytes(buffer.array());
+                if(n < 0) {
                     break;
                 }
-                // Handle line given
-                BoggleMessage m = null;
-                try {   
-                    m = BoggleMessage.parse(line);
+                buffer.limit(n);
+                buffer.position(0);
+                // Hand every complete line off to the game manager
+                try {
+                    while(parser.parse(buffer)) {
+                        if(!handle(rooms, cp, parser)) {
+                            break read;
+                        }
+                    }
                 }
                 catch(BoggleMessage.Exception e) {
                     System.out.println("Incoherent message from server.  Quitting...");
                     break;
                 }
-                if(m.type == BoggleMessage.Type.JOIN) {
-                    String name = m.body;
-                    if(name.isEmpty()) {
-                        System.err.println("Name can not be empty!  Skipping player");
-                        break;
-                    }
-                    cp.setName(name);
-                    if(!game.register(cp)) { // create new boggle player with name 
-                        System.out.println("Could not register player " + cp.getName());
-                        break;
-                    }
-                    calledJoin = true;
-                }
-                else if(m.type == BoggleMessage.Type.PLAY && calledJoin) {
-                    game.start(cp);
-                }
-                else if(m.type == BoggleMessage.Type.WORD && calledJoin) {
-                    String word = m.body;
-                    if(game.playing()) {
-                        game.submitWord(cp, word);
-                    }
-                }
-                else if(m.type == BoggleMessage.Type.END && calledJoin) {
-                    if(!game.remove(cp)) {
-                        System.out.println("Could not be remove player " + cp.getName());
-                    }
-                }
             }
         }
         catch(Exception | Error e) {
@@ -206,24 +318,29 @@ public class BoggleServer {
     }
     
     /**
-     * Gets line from connection
-     * @return Line which was read by server
+     * Gets bytes from connection
+     * @param b Array the bytes are read into
+     * @return Number of bytes read, or -1 at the end of the connection
      */
-    private String getLine() {
-        String line;
+    private int getBytes(byte[] b) {
+        int n;
         try {
-            line = in.readLine();
+            n = in.read(b);
         }
         catch(java.io.IOException e) {
-            line = null;
+            n = -1;
         }
-        return line;
+        return n;
     }
     
     /**
-     * Closes all open file descriptors and streams gracefully
+     * Closes all open file descriptors and streams gracefully.  Only called
+     * by the thread running this connection, so it takes no lock (a lock
+     * held while flushing would pin a virtual thread to its carrier).
      */
-    public synchronized void bye() {
+    public void bye() {
+      players.remove(cp);
+      cp.getOutbound().close(); // releases the writer
       try {
         if (out != null) { out.close(); }
         if (in != null) { in.close(); }
@@ -231,10 +348,303 @@ public class BoggleServer {
       } catch (java.io.IOException e) {
         // do nothing
       } finally {
+        disconnect(rooms, cp);
         System.out.println("Server client terminated.");
       }
     }
-      
+
+    /**
+     * Player of this connection; messages go to its outbound queue and
+     * are written by the Writer
+     */
+    class SocketPlayer extends QueuedPlayer {
+        SocketPlayer() {
+            super(queueCapacity, overflow);
+        }
+
+        @Override
+        protected void queued() {
+            if(!virtualThreads) { // otherwise, the Writer is waiting in take
+                writer.schedule();
+            }
+        }
+
+        @Override
+        public void disconnect() {
+            try {
+                socket.close(); // ends the read in run, which says bye
+            }
+            catch(IOException e) { }
+        }
+    }
+
+    /**
+     * Writes the queued messages to the client, gathering their encoded
+     * bytes in a buffer that is sent whenever it is full or the queue is
+     * empty.  With virtual threads, the Writer has a thread of its own,
+     * which waits for messages and ends when the queue is closed.
+     * Otherwise, it runs on the writers' pool each time messages are
+     * queued while it is not running, and returns once the queue is
+     * empty, so that an idle connection holds no writer thread.
+     */
+    class Writer implements Runnable {
+        private final byte[] buffer = new byte[8192];
+        private int length;
+        /** Whether the Writer is scheduled or running on the pool */
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        /** Runs the Writer on the pool, unless it is already on its way */
+        void schedule() {
+            if(draining.compareAndSet(false, true)) {
+                writers.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            OutboundQueue queue = cp.getOutbound();
+            try {
+                if(virtualThreads) {
+                    BoggleMessage m;
+                    while((m = queue.take()) != null) {
+                        append(cp.encode(m));
+                        if(queue.depth() == 0) {
+                            flush();
+                        }
+                    }
+                }
+                else {
+                    do {
+                        BoggleMessage m;
+                        while((m = queue.poll()) != null) {
+                            append(cp.encode(m));
+                        }
+                        flush();
+                        draining.set(false);
+                        // A message queued after the last poll may have found
+                        // the Writer still running and not scheduled it
+                    } while(queue.depth() > 0 && draining.compareAndSet(false, true));
+                    return;
+                }
+            }
+            catch(InterruptedException | IOException e) { }
+            queue.close(); // later messages are ignored
+        }
+
+        /** Adds the bytes of a message, usually shared with the other recipients */
+        private void append(ByteBuffer b) throws IOException {
+            while(b.hasRemaining()) {
+                if(length == buffer.length) {
+                    flush();
+                }
+                int n = Math.min(b.remaining(), buffer.length - length);
+                b.get(buffer, length, n);
+                length += n;
+            }
+        }
+
+        private void flush() throws IOException {
+            if(length > 0) {
+                out.write(buffer, 0, length);
+                length = 0;
+            }
+        }
+    }
+  }
+
+  /**
+   * Hands a message received from a client off to the game manager of
+   * the client's room.  This is shared by all the server engines.  JOIN
+   * picks the room; every command then goes to the room's mailbox.  The
+   * body is only turned into a string when the game manager needs one.
+   * The latency of each message, from here to the end of its command,
+   * goes to the metrics of its type.
+   * @param rooms Rooms of the server
+   * @param cp Player of the connection the message came from
+   * @param m Parser holding the message to handle
+   * @return false if the connection should be closed
+   */
+  static boolean handle(RoomRegistry rooms, final QueuedPlayer cp, MessageParser m) {
+    BoggleMessage.Type type = m.type();
+    final long received = System.nanoTime();
+    final Metrics.Histogram latency = LATENCY[type.ordinal()];
+    if(type == BoggleMessage.Type.JOIN) {
+        boolean joined = join(rooms, cp, m);
+        latency.record(System.nanoTime() - received); // rejected JOINs too
+        return joined;
+    }
+    final RoomRegistry.Room room = cp.getRoom();
+    if(room == null) { // nothing before JOIN
+        return true;
+    }
+    final BoggleGameManager game = room.getGame();
+    if(type == BoggleMessage.Type.PLAY) {
+        room.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(cp.isRegistered()) {
+                    game.start(cp);
+                }
+                latency.record(System.nanoTime() - received);
+            }
+        });
+    }
+    else if(type == BoggleMessage.Type.WORD) {
+        final String word = m.bodyString();
+        if(cp.getBinary() != null) {
+            cp.getBinary().submitted(word);
+        }
+        room.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(cp.isRegistered() && game.playing()) {
+                    game.submitWord(cp, word);
+                }
+                latency.record(System.nanoTime() - received);
+            }
+        });
+    }
+    else if(type == BoggleMessage.Type.WORDS) {
+        final java.util.List<String> words = BoggleMessage.words(m.body());
+        if(cp.getBinary() != null) {
+            for(String word : words) {
+                cp.getBinary().submitted(word);
+            }
+        }
+        room.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(cp.isRegistered() && game.playing()) {
+                    game.submitWords(cp, words);
+                }
+                latency.record(System.nanoTime() - received);
+            }
+        });
+    }
+    else if(type == BoggleMessage.Type.END) {
+        room.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(cp.isRegistered() && !game.remove(cp)) {
+                    System.out.println("Could not be remove player " + cp.getName());
+                }
+                latency.record(System.nanoTime() - received);
+            }
+        });
+    }
+    return true;
+  }
+
+  /**
+   * Handles a JOIN: reads the name and options, enters the room and
+   * registers the player with the room's game
+   * @param rooms Rooms of the server
+   * @param cp Player of the connection the message came from
+   * @param m Parser holding the JOIN message
+   * @return false if the connection should be closed
+   */
+  private static boolean join(RoomRegistry rooms, QueuedPlayer cp, MessageParser m) {
+    if(cp.getRoom() != null) {
+        System.out.println("Player " + cp.getName() + " already joined");
+        return true;
+    }
+    String[] parts = m.bodyString().split(String.valueOf(OPTION_SEPARATOR));
+    String name = parts[0];
+    String roomName = RoomRegistry.DEFAULT_ROOM;
+    for(int i = 1; i < parts.length; i++) {
+        if(parts[i].equals(BinaryProtocol.OPTION)) {
+            // The client sends and expects frames after this line
+            cp.useBinary();
+            m.setBinary();
+        }
+        else if(parts[i].startsWith(ROOM_OPTION) && parts[i].length() > ROOM_OPTION.length()) {
+            roomName = parts[i].substring(ROOM_OPTION.length());
+        }
+        else {
+            System.out.println("Unknown JOIN option " + parts[i] + " ignored");
+        }
+    }
+    if(name.isEmpty()) {
+        System.err.println("Name can not be empty!  Skipping player");
+        return false;
+    }
+    cp.setName(name);
+    RoomRegistry.Room room = rooms.join(roomName);
+    cp.setRoom(room);
+    // Registration is atomic, so it need not wait for the room's thread
+    if(!room.getGame().register(cp)) { // name already in use in the room
+        System.out.println("Could not register player " + cp.getName());
+        return false; // closing the connection leaves the room
+    }
+    cp.register();
+    return true;
+  }
+
+  /**
+   * Removes the player of a closed connection from its game, so that its
+   * name can be used again and games do not wait for it, and leaves its
+   * room
+   * @param rooms Rooms of the server
+   * @param cp Player of the closed connection
+   */
+  static void disconnect(RoomRegistry rooms, final QueuedPlayer cp) {
+    final RoomRegistry.Room room = cp.getRoom();
+    if(room == null) {
+        return;
+    }
+    room.execute(new Runnable() {
+        @Override
+        public void run() {
+            if(cp.isRegistered()) {
+                room.getGame().remove(cp);
+            }
+        }
+    });
+    rooms.leave(room);
+  }
+
+  /**
+   * Registers the gauges of a server: its connections, rooms and
+   * outbound queues.  They replace those of any other server of the
+   * process.
+   * @param rooms Rooms of the server
+   * @param connections Players of the live connections
+   */
+  static void registerGauges(final RoomRegistry rooms,
+                             final Collection<? extends QueuedPlayer> connections) {
+    Metrics metrics = Metrics.shared();
+    metrics.gauge("connections.active", new Metrics.Gauge() {
+        @Override
+        public long value() {
+            return connections.size();
+        }
+    });
+    metrics.gauge("rooms", new Metrics.Gauge() {
+        @Override
+        public long value() {
+            return rooms.size();
+        }
+    });
+    metrics.gauge("outbound.depth", new Metrics.Gauge() {
+        @Override
+        public long value() {
+            long depth = 0;
+            for(QueuedPlayer p : connections) {
+                depth += p.getOutbound().depth();
+            }
+            return depth;
+        }
+    });
+    metrics.gauge("outbound.depth.max", new Metrics.Gauge() {
+        @Override
+        public long value() {
+            long depth = 0;
+            for(QueuedPlayer p : connections) {
+                depth = Math.max(depth, p.getOutbound().depth());
+            }
+            return depth;
+        }
+    });
   }
 
   /** Stops the server.  The server can later be restarted. */
@@ -242,6 +652,15 @@ public class BoggleServer {
     synchronized(lock) {
         running = false;
         serverRunning = false;
+        if(listener != null) {
+            try {
+                listener.close(); // ends the wait in accept
+            }
+            catch(IOException e) { }
+        }
+        if(connections != null) {
+            connections.shutdown(); // current connections keep going
+        }
     }
   }
 
@@ -251,9 +670,19 @@ public class BoggleServer {
        "-size <number> : creates a square board\n"+
        "-size <number>x<number> : creates a rectangular board\n"+
        "-length <number> : minimal length for valid words\n"+
-       "-dict <file> : dictionary filename\n"+
+       "-dict <file> : dictionary filename (word list or .dict snapshot)\n"+
        "-dice <file> : dice definition filename\n"+
-       "-time <time> : timers, in seconds\n\n"+
+       "-time <time> : timers, in seconds\n"+
+       "-minwords <number> : minimal number of words on a board\n"+
+       "-seed <number> : seed of the dice, to replay the boards of a single room\n"+
+       "-nio <number> : non-blocking server with the given number of event loops\n"+
+       "-virtual : virtual threads, with a writer thread per connection\n"+
+       "   (Java 21 or later); otherwise, writers are pooled\n"+
+       "-queue <number> : messages that can wait for a slow client\n"+
+       "-overflow <drop|disconnect> : when too many are waiting, drop old\n"+
+       "   TEXT messages or disconnect the client\n"+
+       "-workers <number> : threads running the game rooms (default: one per core)\n"+
+       "-metrics <seconds> : prints the metrics of the server periodically\n\n"+
        "default is: "+
        "-size 4 -length 3 -dict words.txt -dice dice.txt -time 180");
   }
@@ -268,9 +697,19 @@ public class BoggleServer {
    -size &lt;number&gt; : creates a square board
    -size &lt;number&gt;x&lt;number&gt; : creates a rectangular board
    -length &lt;number&gt; : minimal length for valid words
-   -dict &lt;file&gt; : dictionary filename
+   -dict &lt;file&gt; : dictionary filename (word list or .dict snapshot)
    -dice &lt;file&gt; : dice definition filename
    -time &lt;time&gt; : timers, in seconds
+   -minwords &lt;number&gt; : minimal number of words on a board
+   -seed &lt;number&gt; : seed of the dice, to replay the boards of a single room
+   -nio &lt;number&gt; : non-blocking server with the given number of event loops
+   -virtual : virtual threads, with a writer thread per connection
+      (Java 21 or later); otherwise, writers are pooled
+   -queue &lt;number&gt; : messages that can wait for a slow client
+   -overflow &lt;drop|disconnect&gt; : when too many are waiting, drop old
+      TEXT messages or disconnect the client
+   -workers &lt;number&gt; : threads running the game rooms (default: one per core)
+   -metrics &lt;seconds&gt; : prints the metrics of the server periodically
    default is: -size 4 -length 3 -dict words.txt -dice dice.txt -time 180
    </pre>
    * @see BoggleGameManager
@@ -282,6 +721,14 @@ public class BoggleServer {
     String diceFile = "/dice.txt";
     int minLength = 3;
     int time = 180;
+    int minWords = 0;
+    Long seed = null;
+    int loops = 0;
+    int workers = Runtime.getRuntime().availableProcessors();
+    int metrics = 0;
+    boolean virtual = false;
+    int queue = OutboundQueue.DEFAULT_CAPACITY;
+    OutboundQueue.Overflow overflow = OutboundQueue.Overflow.DROP_OLDEST_TEXT;
     BoggleDictionary dict;
     Die[] dice;
     if (args.length < 1) {
@@ -309,6 +756,22 @@ public class BoggleServer {
           }
           continue;
         }
+        if (args[i].equals("-minwords")) {
+          try {
+            minWords = Integer.parseInt(args[++i]);
+          } catch (NumberFormatException e) {
+            System.err.printf("Unrecognized number of words; using %d%n", minWords);
+          }
+          continue;
+        }
+        if (args[i].equals("-seed")) {
+          try {
+            seed = Long.parseLong(args[++i]);
+          } catch (NumberFormatException e) {
+            System.err.println("Unrecognized seed; using none");
+          }
+          continue;
+        }
         if (args[i].equals("-size")) {
           String size = args[++i];
           try {
@@ -324,6 +787,54 @@ public class BoggleServer {
           }
           continue;
         }
+        if (args[i].equals("-virtual")) {
+          virtual = true;
+          continue;
+        }
+        if (args[i].equals("-nio")) {
+          try {
+            loops = Integer.parseInt(args[++i]);
+          } catch (NumberFormatException e) {
+            loops = Runtime.getRuntime().availableProcessors();
+            System.err.printf("Unrecognized number of loops; using %d%n", loops);
+          }
+          continue;
+        }
+        if (args[i].equals("-queue")) {
+          try {
+            queue = Integer.parseInt(args[++i]);
+          } catch (NumberFormatException e) {
+            System.err.printf("Unrecognized queue size; using %d%n", queue);
+          }
+          continue;
+        }
+        if (args[i].equals("-overflow")) {
+          String policy = args[++i];
+          if (policy.equalsIgnoreCase("drop")) {
+            overflow = OutboundQueue.Overflow.DROP_OLDEST_TEXT;
+          } else if (policy.equalsIgnoreCase("disconnect")) {
+            overflow = OutboundQueue.Overflow.DISCONNECT;
+          } else {
+            System.err.printf("Unrecognized overflow policy: %s%n", policy);
+          }
+          continue;
+        }
+        if (args[i].equals("-workers")) {
+          try {
+            workers = Integer.parseInt(args[++i]);
+          } catch (NumberFormatException e) {
+            System.err.printf("Unrecognized number of workers; using %d%n", workers);
+          }
+          continue;
+        }
+        if (args[i].equals("-metrics")) {
+          try {
+            metrics = Integer.parseInt(args[++i]);
+          } catch (NumberFormatException e) {
+            System.err.println("Unrecognized metrics period; not printing metrics");
+          }
+          continue;
+        }
         if (args[i].equals("-dict")) {
           dictFile = args[++i];
           continue;
@@ -347,19 +858,20 @@ public class BoggleServer {
       }
     }
     try {
-      InputStream dictStream
-        = SingleBoggleGame.class.getResourceAsStream(dictFile);
-      if (dictStream == null)
-        dictStream = new java.io.FileInputStream(dictFile);
-      Set<String> words = new java.util.HashSet<>();
-      Scanner in = new Scanner(dictStream);
-      while (in.hasNext()) {
-        String w = in.next();
-        if (w.length() >= minLength)
-          words.add(w.toUpperCase());
+      if (dictFile.endsWith(BoggleDictionary.SNAPSHOT_SUFFIX)) {
+        dict = BoggleDictionary.load(new java.io.File(dictFile));
+        if (dict.minLength() < minLength)
+          System.err.printf("Snapshot has words shorter than %d%n", minLength);
+      } else {
+        InputStream dictStream
+          = SingleBoggleGame.class.getResourceAsStream(dictFile);
+        if (dictStream == null) {
+          dict = WordListLoader.load(new java.io.File(dictFile), minLength);
+        } else {
+          dict = WordListLoader.load(dictStream, minLength);
+          dictStream.close();
+        }
       }
-      in.close();
-      dict = new BoggleDictionary(words);
     } catch (java.io.IOException e) {
       System.err.printf("Cannot open dictionary file: %s%n", e.getMessage());
       return;
@@ -375,11 +887,29 @@ public class BoggleServer {
       return;
     }
     System.out.printf("Dictionary has %d words.%n", dict.size());
-    BoggleGameManager game = new BoggleGameManager(width, height, dict, dice);
+    BoggleGameManager game;
+    try {
+      game = new BoggleGameManager(seed == null
+        ? new BoardPool(width, height, dice, dict, BoardPool.DEFAULT_CAPACITY, minWords)
+        : new BoardPool(width, height, dice, dict, BoardPool.DEFAULT_CAPACITY, minWords, seed));
+    } catch (IllegalArgumentException e) {
+      System.err.printf("Cannot build board: %s%n", e.getMessage());
+      return;
+    }
     game.setTimer(time);
-    BoggleServer server = new BoggleServer(port, game);
+    RoomRegistry rooms = new RoomRegistry(game, Math.max(workers, 1));
+    if (metrics > 0)
+      Metrics.shared().startDump(System.out, metrics, java.util.concurrent.TimeUnit.SECONDS);
     try {
-      server.start();
+      if (loops > 0) {
+        NioBoggleServer server = new NioBoggleServer(port, rooms, loops);
+        server.setOutboundLimit(queue, overflow);
+        server.start();
+      } else {
+        BoggleServer server = new BoggleServer(port, rooms, virtual);
+        server.setOutboundLimit(queue, overflow);
+        server.start();
+      }
     } catch (java.io.IOException e) {
       System.err.printf("Cannot start server: %s%n", e.getMessage());
     }
@@ -0,0 +1,351 @@
+package cs671;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/** Search engine shared by the Boggle boards.  A solver is built once
+ * for given board dimensions: it precomputes, for every cell of the
+ * board, the list of its neighbors, so that searches never probe
+ * cells that are off the board or the cell itself.  Boards are
+ * passed to the solver as flat arrays of letters, listed from the top
+ * row to the bottom row and, within each row, from left to right.
+ *
+ * <p>Searches do not allocate per step: cells already used by the
+ * current path are recorded in a {@code long} bitmask (or in an array
+ * of {@code long} for boards of more than 64 cells), the current path
+ * is kept in a buffer allocated once per search, and dictionary
+ * lookups use cursors.
+ * Strings are only created for words that are actually found.
+ *
+ * <p>Large boards are solved in parallel in the common
+ * {@code ForkJoinPool}: one task is created per starting cell, and
+ * the first steps of each path are split again into one task per
+ * neighbor so that cells with many words do not hold back the others.
+ * Each task collects its words in its own list and the lists are
+ * merged when tasks are joined.  Boards smaller than the parallel
+ * threshold are solved on the calling thread.
+ *
+ * <p>Instances of this class are thread-safe: a solver only holds
+ * the board geometry, and every search gets its own small buffers,
+ * so one solver can serve any number of threads without locking.
+ *
+ * @author Chris Len
+ * @see BoggleDictionary#advance
+ */
+public class BoggleSolver {
+
+  /** Maximum number of neighbors of a cell. */
+  private static final int MAX_DEGREE = 8;
+
+  /** Default number of cells from which boards are solved in parallel. */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 64;
+
+  /** Paths shorter than this are split into one task per neighbor
+   * by parallel searches. */
+  private static final int SPLIT_DEPTH = 2;
+
+  private final int width;
+  private final int height;
+  private final int cells;
+  /** Neighbors of cell {@code i} are at {@code neighbors[8*i..8*i+degree[i])}. */
+  private final int[] neighbors;
+  private final int[] degree;
+  private volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+  /** Buffers of one search: the letters of the current path and, for
+   * boards of more than 64 cells, the visited cells. */
+  private static final class Scratch {
+    final char[] path;
+    final long[] visited;
+
+    Scratch (char[] path, long[] visited) {
+      this.path = path;
+      this.visited = visited;
+    }
+  }
+
+  /** Creates a solver for boards of the given dimensions.
+   *
+   * @param w the width of the board
+   * @param h the height of the board
+   * @throws IllegalArgumentException if the width or the height is
+   * less than 1
+   */
+  public BoggleSolver (int w, int h) {
+    if(w < 1) { throw new IllegalArgumentException("Width must be greather then one"); }
+    if(h < 1) { throw new IllegalArgumentException("Height must be greater then one"); }
+    width = w;
+    height = h;
+    cells = w * h;
+    neighbors = new int[cells * MAX_DEGREE];
+    degree = new int[cells];
+    for(int row = 0; row < h; row++) {
+      for(int col = 0; col < w; col++) {
+        int cell = row * w + col;
+        for(int r = row - 1; r <= row + 1; r++) {
+          for(int c = col - 1; c <= col + 1; c++) {
+            if(r < 0 || r >= h || c < 0 || c >= w || (r == row && c == col)) {
+              continue;
+            }
+            neighbors[cell * MAX_DEGREE + degree[cell]++] = r * w + c;
+          }
+        }
+      }
+    }
+  }
+
+  private boolean isLarge () {
+    return cells > 64;
+  }
+
+  private long[] newVisited () {
+    return new long[(cells + 63) / 64];
+  }
+
+  /** Number of columns of the boards handled by this solver. */
+  public int getWidth () {
+    return width;
+  }
+
+  /** Number of rows of the boards handled by this solver. */
+  public int getHeight () {
+    return height;
+  }
+
+  /** Sets the size from which boards are solved in parallel.
+   *
+   * @param cells the minimum number of cells of a board for it to be
+   * solved in parallel; use {@code Integer.MAX_VALUE} to always solve
+   * boards on the calling thread
+   * @return the previous threshold
+   */
+  public int setParallelThreshold (int cells) {
+    int old = parallelThreshold;
+    parallelThreshold = cells;
+    return old;
+  }
+
+  /** Checks if a string can be found on a board, according to the
+   * rules of Boggle.
+   *
+   * @param grid the letters of the board, in board order
+   * @param string the string to look for
+   * @return true iff the string is found on the board
+   */
+  public boolean containsString (char[] grid, String string) {
+    int length = string.length();
+    if(length == 0) { return true; }
+    if(length > cells) { return false; }
+    char first = string.charAt(0);
+    long[] visited = isLarge() ? newVisited() : null;
+    for(int cell = 0; cell < cells; cell++) {
+      if(grid[cell] != first) {
+        continue;
+      }
+      if(visited == null) {
+        if(contains(grid, cell, string, 1, 1L << cell)) { return true; }
+      }
+      else {
+        mark(visited, cell);
+        boolean found = containsLarge(grid, cell, string, 1, visited);
+        unmark(visited, cell);
+        if(found) { return true; }
+      }
+    }
+    return false;
+  }
+
+  private boolean contains (char[] grid, int cell, String s, int index, long used) {
+    if(index == s.length()) { return true; }
+    char c = s.charAt(index);
+    for(int k = cell * MAX_DEGREE, end = k + degree[cell]; k < end; k++) {
+      int next = neighbors[k];
+      long bit = 1L << next;
+      if((used & bit) == 0 && grid[next] == c
+         && contains(grid, next, s, index + 1, used | bit)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean containsLarge (char[] grid, int cell, String s, int index, long[] visited) {
+    if(index == s.length()) { return true; }
+    char c = s.charAt(index);
+    for(int k = cell * MAX_DEGREE, end = k + degree[cell]; k < end; k++) {
+      int next = neighbors[k];
+      if(grid[next] != c || isMarked(visited, next)) {
+        continue;
+      }
+      mark(visited, next);
+      boolean found = containsLarge(grid, next, s, index + 1, visited);
+      unmark(visited, next);
+      if(found) { return true; }
+    }
+    return false;
+  }
+
+  /** Adds to a collection all the dictionary words that can be found
+   * on a board.  Words found along several paths are added several
+   * times; use a set to eliminate duplicates.  Boards that have at
+   * least as many cells as the parallel threshold are solved in
+   * parallel; the collection is then only accessed by the calling
+   * thread.
+   *
+   * @param grid the letters of the board, in board order
+   * @param dict a dictionary of words
+   * @param words the collection the words are added to
+   * @see #setParallelThreshold
+   */
+  public void allWords (char[] grid, BoggleDictionary dict, Collection<String> words) {
+    if(cells >= parallelThreshold) {
+      words.addAll(ForkJoinPool.commonPool().invoke(new SearchTask(grid, dict)));
+      return;
+    }
+    Scratch s = new Scratch(new char[cells], isLarge() ? newVisited() : null);
+    for(int cell = 0; cell < cells; cell++) {
+      if(isLarge()) {
+        searchLarge(grid, cell, dict.root(), 0, dict, words, s);
+      }
+      else {
+        search(grid, cell, dict.root(), 0, 0L, dict, words, s);
+      }
+    }
+  }
+
+  /**
+   * Parallel search.  The root task forks one task per starting cell.
+   * A task that starts a path shorter than {@code SPLIT_DEPTH} takes
+   * one step and forks one task per free neighbor, each with its own
+   * copy of the path and visited cells; longer paths are searched
+   * sequentially.
+   */
+  private class SearchTask extends RecursiveTask<List<String>> {
+    static final long serialVersionUID = 1;
+    private final char[] grid;
+    private final BoggleDictionary dict;
+    /** Cell to visit, or -1 for the root task. */
+    private final int cell;
+    private final int cursor;
+    private final int depth;
+    private final char[] path;
+    private final long[] used;
+
+    SearchTask (char[] grid, BoggleDictionary dict) {
+      this(grid, dict, -1, dict.root(), 0, null, null);
+    }
+
+    private SearchTask (char[] grid, BoggleDictionary dict, int cell,
+                        int cursor, int depth, char[] path, long[] used) {
+      this.grid = grid;
+      this.dict = dict;
+      this.cell = cell;
+      this.cursor = cursor;
+      this.depth = depth;
+      this.path = path;
+      this.used = used;
+    }
+
+    @Override
+    protected List<String> compute () {
+      List<String> words = new ArrayList<>();
+      List<SearchTask> tasks = new ArrayList<>();
+      if(cell < 0) {
+        for(int c = 0; c < cells; c++) {
+          tasks.add(new SearchTask(grid, dict, c, cursor, 0,
+                                   new char[cells], newVisited()));
+        }
+      }
+      else if(depth >= SPLIT_DEPTH) {
+        if(isLarge()) {
+          searchLarge(grid, cell, cursor, depth, dict, words, new Scratch(path, used));
+        }
+        else {
+          search(grid, cell, cursor, depth, used[0], dict, words, new Scratch(path, null));
+        }
+        return words;
+      }
+      else {
+        char c = grid[cell];
+        int next = dict.advance(cursor, c);
+        if(next == BoggleDictionary.DEAD) { return words; }
+        path[depth] = c;
+        if(dict.isWord(next)) {
+          words.add(new String(path, 0, depth + 1));
+        }
+        if(!dict.isPrefix(next)) { return words; }
+        mark(used, cell);
+        for(int k = cell * MAX_DEGREE, end = k + degree[cell]; k < end; k++) {
+          int n = neighbors[k];
+          if(!isMarked(used, n)) {
+            tasks.add(new SearchTask(grid, dict, n, next, depth + 1,
+                                     path.clone(), used.clone()));
+          }
+        }
+      }
+      for(SearchTask t : ForkJoinTask.invokeAll(tasks)) {
+        words.addAll(t.join());
+      }
+      return words;
+    }
+  }
+
+  private void search (char[] grid, int cell, int cursor, int depth, long used,
+                       BoggleDictionary dict, Collection<String> words, Scratch s) {
+    char c = grid[cell];
+    cursor = dict.advance(cursor, c);
+    if(cursor == BoggleDictionary.DEAD) { return; }
+    char[] path = s.path;
+    path[depth++] = c;
+    if(dict.isWord(cursor)) {
+      words.add(new String(path, 0, depth));
+    }
+    if(dict.isPrefix(cursor)) {
+      used |= 1L << cell;
+      for(int k = cell * MAX_DEGREE, end = k + degree[cell]; k < end; k++) {
+        int next = neighbors[k];
+        if((used & (1L << next)) == 0) {
+          search(grid, next, cursor, depth, used, dict, words, s);
+        }
+      }
+    }
+  }
+
+  private void searchLarge (char[] grid, int cell, int cursor, int depth,
+                            BoggleDictionary dict, Collection<String> words, Scratch s) {
+    char c = grid[cell];
+    cursor = dict.advance(cursor, c);
+    if(cursor == BoggleDictionary.DEAD) { return; }
+    s.path[depth++] = c;
+    if(dict.isWord(cursor)) {
+      words.add(new String(s.path, 0, depth));
+    }
+    if(dict.isPrefix(cursor)) {
+      long[] visited = s.visited;
+      mark(visited, cell);
+      for(int k = cell * MAX_DEGREE, end = k + degree[cell]; k < end; k++) {
+        int next = neighbors[k];
+        if(!isMarked(visited, next)) {
+          searchLarge(grid, next, cursor, depth, dict, words, s);
+        }
+      }
+      unmark(visited, cell);
+    }
+  }
+
+  private static boolean isMarked (long[] visited, int cell) {
+    return (visited[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  private static void mark (long[] visited, int cell) {
+    visited[cell >>> 6] |= 1L << cell;
+  }
+
+  private static void unmark (long[] visited, int cell) {
+    visited[cell >>> 6] &= ~(1L << cell);
+  }
+}
@@ -1,9 +1,19 @@
 package cs671;
 
 import java.net.Socket;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -13,12 +23,18 @@ import java.util.regex.Matcher;
  * <li><tt>PLAY</tt>: indicates that the player is ready to start a new game
  * <li><tt>END</tt>: indicates that the player is ready to end the current game
  * <li><tt>BOARD</tt>: redisplays the board
- * <li>any other string is submitted as a word
+ * <li>any other string is submitted as a word; several words separated
+ * by spaces are submitted together
  * </ul>
  * Words can be submitted is lowecase or uppercase, which means that
  * <tt>play</tt>, <tt>end</tt> and <tt>board</tt> can be submitted as
  * words by not having them be uppercase.
  *
+ * <p>The interface speaks the text protocol by default, and the binary
+ * protocol if it is started with the <tt>-binary</tt> option.  With
+ * the <tt>-room</tt> option, it joins the named game room instead of
+ * the server's default room.
+ *
  * @author Michel Charpentier
  * @version 2.0, 02/27/13
  * @see BoggleServer
@@ -30,8 +46,9 @@ public class BoggleTextUI {
   private String board;
 
   /** Constructor. */
-  private BoggleTextUI (String name, String hostname, int port) {
-    player = new ClientPlayer(name, hostname, port);
+  private BoggleTextUI (String name, String hostname, int port,
+                        boolean binary, String room) {
+    player = new ClientPlayer(name, hostname, port, binary, room);
     terminalHandler = new TerminalHandler();
   }
 
@@ -85,15 +102,26 @@ public class BoggleTextUI {
 
     private final String hostname;
     private final int port;
+    private final boolean binary;
+    private final String room;
 
     private OutputStreamWriter out;
     private BufferedReader in;
     private Socket socket;
+    /** Frames to and from the server, with the binary protocol */
+    private OutputStream frameOut;
+    private DataInputStream frameIn;
+    /** Words submitted, by number, with the binary protocol */
+    private final List<String> words = new ArrayList<String>();
+    private final Map<String,Integer> wordIds = new HashMap<String,Integer>();
 
-    public ClientPlayer (String name, String hostname, int port) {
+    public ClientPlayer (String name, String hostname, int port,
+                         boolean binary, String room) {
       super(name);
       this.hostname = hostname;
       this.port = port;
+      this.binary = binary;
+      this.room = room;
     }
 
     public void run () {
@@ -121,29 +149,44 @@ public class BoggleTextUI {
         }
         try {
           out = new OutputStreamWriter(socket.getOutputStream());
-          in = new BufferedReader
-            (new InputStreamReader(socket.getInputStream()));
+          if (binary)
+            frameIn = new DataInputStream
+              (new BufferedInputStream(socket.getInputStream()));
+          else
+            in = new BufferedReader
+              (new InputStreamReader(socket.getInputStream()));
         } catch (java.io.IOException e) {
           displayText("Cannot open socket streams.");
           bye();
           return;
         }
       }
-      sendMessage(new BoggleMessage(BoggleMessage.Type.JOIN, getName()));
+      String join = getName();
+      if (room != null)
+        join += ";room=" + room;
+      if (binary) {
+        synchronized (this) {
+          sendMessage(new BoggleMessage(BoggleMessage.Type.JOIN,
+                                        join + ";" + BinaryProtocol.OPTION));
+          try {
+            frameOut = socket.getOutputStream(); // frames from now on
+          } catch (java.io.IOException e) {
+            displayText("Cannot open socket streams.");
+            bye();
+            return;
+          }
+        }
+      } else {
+        sendMessage(new BoggleMessage(BoggleMessage.Type.JOIN, join));
+      }
       displayText(hostname + " successfully contacted.");
       while (!socketClosed()) {
-        String line;
-        try {
-          line = in.readLine();
-        } catch (java.io.IOException e) {
-          line = null;
-        }
-        if (line == null) {
-          break;
-        }
         BoggleMessage m;
         try {
-          m = BoggleMessage.parse(line);
+          m = receive();
+          if (m == null) {
+            break;
+          }
         } catch (BoggleMessage.Exception e) {
           displayText("Incoherent message from server.  Quitting.");
           bye();
@@ -169,10 +212,56 @@ public class BoggleTextUI {
       }
     }
 
+    /** Reads the next message from the server, or null at the end. */
+    private BoggleMessage receive () throws BoggleMessage.Exception {
+      try {
+        if (!binary) {
+          String line = in.readLine();
+          return line == null ? null : BoggleMessage.parse(line);
+        }
+        int length = BinaryProtocol.readVarInt(frameIn);
+        if (length < 1)
+          throw new BoggleMessage.Exception("Empty frame");
+        int code = frameIn.readUnsignedByte();
+        byte[] payload = new byte[length - 1];
+        frameIn.readFully(payload);
+        if (code == BinaryProtocol.RESULT)
+          return results(ByteBuffer.wrap(payload));
+        BoggleMessage.Type t = BinaryProtocol.type(code);
+        if (t == null)
+          throw new BoggleMessage.Exception("Unknown frame type: "+code);
+        return new BoggleMessage(t, new String(payload, StandardCharsets.UTF_8));
+      } catch (java.io.IOException e) {
+        return null;
+      }
+    }
+
+    /** Turns a RESULT frame into text, using the submitted words. */
+    private synchronized BoggleMessage results (ByteBuffer b)
+      throws BoggleMessage.Exception {
+      WordResults.Status[] status = WordResults.Status.values();
+      StringBuilder text = new StringBuilder();
+      try {
+        while (b.hasRemaining()) {
+          int id = BinaryProtocol.getVarInt(b);
+          int s = b.get();
+          if (id < 0 || id >= words.size() || s < 0 || s >= status.length)
+            throw new BoggleMessage.Exception("Incoherent word result");
+          if (text.length() > 0)
+            text.append(", ");
+          text.append(words.get(id)).append(": ").append(status[s].description());
+        }
+      } catch (java.nio.BufferUnderflowException e) {
+        throw new BoggleMessage.Exception("Truncated word result");
+      }
+      return new BoggleMessage(BoggleMessage.Type.TEXT, text.toString());
+    }
+
     public synchronized void bye() {
       try {
         if (out != null) out.close();
         if (in != null) in.close();
+        if (frameIn != null) frameIn.close();
         if (socket != null) socket.close();
       } catch (java.io.IOException e) {
         // do nothing
@@ -183,7 +272,10 @@ public class BoggleTextUI {
 
     private synchronized void sendMessage (BoggleMessage m) {
       try {
-        if (out != null) {
+        if (frameOut != null) {
+          BinaryProtocol.write(m, frameOut);
+          frameOut.flush();
+        } else if (out != null) {
           out.write(m.toString());
           out.write('\n');
           out.flush();
@@ -201,9 +293,20 @@ public class BoggleTextUI {
       sendMessage(end);
     }
 
-    public void submitWord (String word) {
+    public synchronized void submitWord (String word) {
       word = word.trim().toUpperCase();
-      sendMessage(new BoggleMessage(BoggleMessage.Type.WORD, word));
+      boolean batch = word.indexOf(' ') >= 0;
+      if (binary) // the server numbers the words the same way
+        for (String w : batch ? BoggleMessage.words(word)
+               : Collections.singletonList(word))
+          if (!wordIds.containsKey(w)) {
+            wordIds.put(w, words.size());
+            words.add(w);
+          }
+      if (batch)
+        sendMessage(new BoggleMessage(BoggleMessage.Type.WORDS, word));
+      else
+        sendMessage(new BoggleMessage(BoggleMessage.Type.WORD, word));
     }
 
     private synchronized boolean socketClosed () {
@@ -248,16 +351,30 @@ public class BoggleTextUI {
        "  PLAY: indicates that the player is ready to start a new game\n"+
        "  END: indicates that the player is ready to end the current game\n"+
        "  BOARD: redisplays the board.\n"+
-       "Any other string is submitted as a word.\n");
+       "Any other string is submitted as a word; "+
+       "words separated by spaces are submitted together.\n");
   }
 
   public static void main (String[] args) throws NumberFormatException {
-    if (args.length != 3) {
-      System.err.println("Parameters: player-name hostname port");
+    boolean binary = false;
+    String room = null;
+    boolean ok = args.length >= 3;
+    for (int i=3; ok && i<args.length; i++) {
+      if (args[i].equals("-binary"))
+        binary = true;
+      else if (args[i].equals("-room") && i+1 < args.length)
+        room = args[++i];
+      else
+        ok = false;
+    }
+    if (!ok) {
+      System.err.println
+        ("Parameters: player-name hostname port [-binary] [-room <name>]");
       return;
     }
     BoggleTextUI ui
-      = new BoggleTextUI(args[0],args[1], Integer.parseInt(args[2]));
+      = new BoggleTextUI(args[0],args[1], Integer.parseInt(args[2]),
+                         binary, room);
     ui.launch();
   }
 }
@@ -1,22 +1,30 @@
 package cs671;
 
 import java.io.InputStream;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.SplittableRandom;
 import java.util.TreeSet;
 
 /** A playable Boggle board (or grid).  The board contains dice and
  * can be "rattled" to get random configurations.
  *
+ * <p>Each board has its own random generator, so that boards rattled
+ * at the same time by different threads do not compete for a shared
+ * one.  A board built with a seed goes through the same
+ * configurations every time, which makes games reproducible.
+ *
  * @author Michel Charpentier
  * @version 2.0, 02/27/13
  */
 public class DiceBoggleBoard extends BoggleBoardMain implements BoggleBoard {
-  /** Saves die array so we can rattle easier */
-  private Die[] saveDie;
+  /** Copies of the dice, in their original order */
+  private final Die[] dice;
+  /** Current order of the dice on the board, as indexes in {@code dice} */
+  private final int[] order;
+  private SplittableRandom random;
+
   /** Creates a new board.  The board has the specified dimensions
    * and uses <em>copies</em> of the dice given in argument.  If
    * there aren't enough dice in the array, some dice will be copied
@@ -29,34 +37,81 @@ public class DiceBoggleBoard extends BoggleBoardMain implements BoggleBoard {
    * the number of dice is less than 1
    */
   public DiceBoggleBoard (int w, int h, Die[] d) {
+    this(w, h, d, new SplittableRandom());
+  }
+
+  /** Creates a new board that is rattled with a seeded generator.
+   * Boards built with the same dice and seed go through the same
+   * configurations.
+   *
+   * @param w the width of the board
+   * @param h the height of the board
+   * @param d an array of dice
+   * @param seed the seed of the board's random generator
+   * @throws IllegalArgumentException if the width, the height or
+   * the number of dice is less than 1
+   */
+  public DiceBoggleBoard (int w, int h, Die[] d, long seed) {
+    this(w, h, d, new SplittableRandom(seed));
+  }
+
+  /** Creates a new board that is rattled with a given generator.
+   *
+   * @param w the width of the board
+   * @param h the height of the board
+   * @param d an array of dice
+   * @param random the board's random generator
+   * @throws IllegalArgumentException if the width, the height or
+   * the number of dice is less than 1
+   */
+  public DiceBoggleBoard (int w, int h, Die[] d, SplittableRandom random) {
     super(w,h,d);
-    saveDie = d;
+    dice = new Die[d.length];
+    order = new int[d.length];
+    for(int i = 0; i < d.length; i++) {
+        dice[i] = new Die(d[i]);
+        order[i] = i;
+    }
+    this.random = random;
+  }
+
+  /** Reseeds the board's random generator.
+   *
+   * @param seed the new seed
+   */
+  public synchronized void setSeed (long seed) {
+    random = new SplittableRandom(seed);
   }
 
   /** "Rattles" the board by shaking it to randomize its letters.
    * This method involves two operations: first, dice are randomly
-   * permuted, then each die is "rolled".
+   * permuted, then each die is "rolled".  The new letters replace the
+   * old ones at once, so that concurrent searches see either the old
+   * or the new board.  The dice given to the constructor are not
+   * affected.  The only allocation is the array of new letters.
    *
    * @see Die#roll
    */
-  public void rattle () {
-    // Part one random permuattion
-    Collections.shuffle(Arrays.asList(saveDie)); // shuffles single-d array
-    // reput dice into array
+  public synchronized void rattle () {
+    // Part one random permutation, of the indexes (Fisher-Yates)
+    for(int i = order.length - 1; i > 0; i--) {
+        int j = random.nextInt(i + 1);
+        int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+    }
+    // Part two rolling, as the dice are put on the board
+    char[] grid = new char[width*height];
     int count = 0;
-    for(int row = 0; row < height; row++) {
-        for(int col = 0; col < width; col++) {
-        board[row][col] = saveDie[count++];
-        if(count >= saveDie.length) { count = 0; }
-      }    
-    } 
-    // Part two rolling
     for(int row = 0; row < height; row++) {
       for(int col = 0; col < width; col++) {
-        char c = board[row][col].top();
-        board[row][col].roll();
-        letters[row][col] = board[row][col].top();
+        Die die = dice[order[count++]];
+        if(count >= order.length) { count = 0; }
+        die.roll(random);
+        board[row][col] = die;
+        grid[row*width + col] = die.top();
       }    
     }  
+    letters = grid;
   }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package cs671;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Compiles a word list into a dictionary snapshot.  Words shorter
+ * than the minimal length are dropped and the others are converted to
+ * upper case, as the game programs do when they read a word list; the
+ * resulting dictionary is then saved in binary form and can be loaded
+ * by the game programs without any parsing or sorting.
+ *
+ * @author Chris Len
+ * @see BoggleDictionary#save
+ * @see BoggleDictionary#load
+ */
+public class DictionaryCompiler {
+
+  private DictionaryCompiler () { }
+
+  private static void usage () {
+    System.out.println
+      ("Parameters: [options] word-file snapshot-file\n"+
+       "-length <number> : minimal length for valid words\n\n"+
+       "default is: -length 3");
+  }
+
+  /** Compiles a word list.  The word list is a text file of words
+   * separated by whitespaces.  Options:
+   * <pre>
+   -length &lt;number&gt; : minimal length for valid words
+   default is: -length 3
+   </pre>
+   */
+  public static void main (String[] args) {
+    int minLength = 3;
+    String wordFile = null;
+    String snapshotFile = null;
+    for (int i=0; i<args.length; i++) {
+      try {
+        if (args[i].equals("-help")) {
+          usage();
+          return;
+        }
+        if (args[i].equals("-length")) {
+          try {
+            minLength = Integer.parseInt(args[++i]);
+          } catch (NumberFormatException e) {
+            System.err.printf("Unrecognized length; using %d%n", minLength);
+          }
+          continue;
+        }
+        if (wordFile == null) {
+          wordFile = args[i];
+        } else if (snapshotFile == null) {
+          snapshotFile = args[i];
+        } else {
+          System.err.printf("Unknown option: %s%n", args[i]);
+        }
+      } catch (IndexOutOfBoundsException e) {
+        System.err.printf("Incomplete option: %s%n", args[i-1]);
+        break;
+      }
+    }
+    if (snapshotFile == null) {
+      usage();
+      return;
+    }
+    BoggleDictionary dict;
+    try {
+      dict = WordListLoader.load(new File(wordFile), minLength);
+    } catch (IOException e) {
+      System.err.printf("Cannot open word file: %s%n", e.getMessage());
+      return;
+    }
+    try (OutputStream out = new java.io.FileOutputStream(snapshotFile)) {
+      dict.save(out);
+    } catch (IOException e) {
+      System.err.printf("Cannot write snapshot: %s%n", e.getMessage());
+      return;
+    }
+    System.out.printf("Compiled %d words into %s (%d bytes).%n",
+                      dict.size(), snapshotFile, new File(snapshotFile).length());
+  }
+}
@@ -4,6 +4,8 @@ import java.io.Reader;
 import java.io.BufferedReader;
 
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /** An implementation of a (generalized) Boggle die.  Dice can have
  * any number of faces (at least one) and each face contains a letter.
@@ -14,8 +16,6 @@ import java.util.List;
  */
 public class Die {
 
-  static final java.util.Random rand = new java.util.Random();
-
   private final char[] faces;
 
   private int top;
@@ -88,10 +88,21 @@ public class Die {
   }
 
   /** Rolls the die.  One of the die faces is randomly chosen to
-   * become the new top.
+   * become the new top.  The random numbers come from the calling
+   * thread's own generator, so that dice rolled by different threads
+   * do not compete for a shared one.
    */
   public void roll () {
-    top = rand.nextInt(faces.length);
+    top = ThreadLocalRandom.current().nextInt(faces.length);
+  }
+
+  /** Rolls the die with a given generator, for instance one that was
+   * seeded to reproduce a game.
+   *
+   * @param random the generator that chooses the new top
+   */
+  public void roll (SplittableRandom random) {
+    top = random.nextInt(faces.length);
   }
 
   /** A string representation of the die.
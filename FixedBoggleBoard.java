@@ -27,11 +27,13 @@ public class FixedBoggleBoard extends BoggleBoardMain implements BoggleBoard {
    * @param col Col on the board to set the letter
    * @param c Char to set the letter on the board to
    */
-  public void setLetter (int row, int col, char c) {
+  public synchronized void setLetter (int row, int col, char c) {
     if(row >= height || row < 0 || col >= width || col < 0) {
         System.err.println("Invalid coordinate: " + row + ", " + col);
         return;
     }
-    letters[row][col] = c;
+    char[] grid = letters.clone();
+    grid[row*width + col] = c;
+    letters = grid;
   }
 }
\ No newline at end of file
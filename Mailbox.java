@@ -0,0 +1,100 @@
+package cs671;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** A queue of commands run one at a time, in order, by a single
+ * logical thread.  Any number of threads can post commands; posting
+ * takes no lock, only an atomic exchange on the tail of a linked list
+ * (a multiple-producer, single-consumer queue).  When commands are
+ * waiting and the mailbox is not already being drained, a drain is
+ * submitted to an executor.  A drain runs a bounded batch of commands
+ * and then gives its thread back, so that mailboxes sharing an
+ * executor take turns.
+ *
+ * <p>Because commands never run concurrently, the state they touch
+ * needs no locking, even when successive drains run on different
+ * threads of the executor.
+ *
+ * @author Chris Len
+ * @see BoggleGameManager
+ */
+class Mailbox implements Runnable {
+
+  /** Commands run by a drain before it gives its thread back */
+  private static final int BATCH = 128;
+
+  private static final class Node {
+    Runnable command;
+    volatile Node next;
+
+    Node (Runnable command) {
+      this.command = command;
+    }
+  }
+
+  /** Last command posted; producers swap themselves in */
+  private final AtomicReference<Node> tail;
+  /** Last command taken; only used by the drain */
+  private Node head;
+  /** Whether a drain is submitted or running */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile Executor executor;
+
+  /** Creates an empty mailbox.
+   *
+   * @param executor the executor that runs the drains
+   */
+  Mailbox (Executor executor) {
+    this.executor = executor;
+    head = new Node(null);
+    tail = new AtomicReference<>(head);
+  }
+
+  /** Changes the executor that runs the drains. */
+  void setExecutor (Executor executor) {
+    this.executor = executor;
+  }
+
+  /** Posts a command.  It will run after all the commands posted
+   * before it.
+   *
+   * @param command the command
+   */
+  void post (Runnable command) {
+    Node n = new Node(command);
+    tail.getAndSet(n).next = n;
+    schedule();
+  }
+
+  private void schedule () {
+    if (scheduled.compareAndSet(false, true))
+      executor.execute(this);
+  }
+
+  /** Drains a batch of commands; run by the executor. */
+  @Override
+  public void run () {
+    try {
+      for (int i = 0; i < BATCH; i++) {
+        Node next = head.next;
+        if (next == null)
+          break;
+        head = next;
+        Runnable command = next.command;
+        next.command = null;
+        try {
+          command.run();
+        } catch (RuntimeException e) { // one bad command must not stop the others
+          System.err.println("Command failed: " + e);
+        }
+      }
+    } finally {
+      scheduled.set(false);
+      // A command may have been posted while the flag was set
+      if (tail.get() != head)
+        schedule();
+    }
+  }
+}
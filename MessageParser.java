@@ -0,0 +1,241 @@
+package cs671;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Parses the lines received on a connection directly from bytes.
+ * The parser scans an input buffer for the separator and the end of
+ * the line, finds the message type with a switch over the header, and
+ * exposes the body as a character sequence that is a view of the
+ * received bytes.  No regular expression, no intermediate string and,
+ * when a line arrives in one piece, no copy is involved; a string is
+ * only built if the handler asks for one.
+ *
+ * <p>A line split across several reads is accumulated in a buffer of
+ * the parser.  Lines end with a newline, optionally preceded by a
+ * carriage return.  The type and body of the last line parsed remain
+ * valid until the next call to {@code parse}.  A parser is meant to be
+ * used by a single thread.
+ *
+ * <p>After {@code setBinary} is called, the parser reads the frames of
+ * the binary protocol instead of lines, in the same way.
+ *
+ * @see BinaryProtocol
+ *
+ * @author Chris Len
+ * @see BoggleMessage
+ */
+public class MessageParser {
+
+  /** Default length of the longest line accepted. */
+  public static final int DEFAULT_MAX_LINE = 8192;
+
+  private final int maxLine;
+  /** Partial line carried over from previous reads */
+  private byte[] line = new byte[128];
+  private int lineLength;
+  private final Bytes body = new Bytes();
+  private BoggleMessage.Type type;
+  private String bodyString;
+  /** Whether frames are parsed instead of lines */
+  private boolean binary;
+  /** Length of the frame being received, or -1 while it is read */
+  private int frameLength = -1;
+  private int varShift;
+  private int varValue;
+
+  /** Creates a parser that accepts lines of {@code DEFAULT_MAX_LINE}
+   * bytes at most. */
+  public MessageParser () {
+    this(DEFAULT_MAX_LINE);
+  }
+
+  /** Creates a parser.
+   *
+   * @param maxLine the length of the longest line accepted, in bytes
+   */
+  public MessageParser (int maxLine) {
+    this.maxLine = maxLine;
+  }
+
+  /** Parses the next line from a buffer.  Bytes are consumed up to and
+   * including the first newline; if there is none, all the remaining
+   * bytes are consumed and kept until the rest of the line arrives.
+   *
+   * @param in the bytes received
+   * @return true if a complete line was parsed, in which case its type
+   * and body are available
+   * @throws BoggleMessage.Exception if the line cannot be parsed into a
+   * message or is too long
+   */
+  public boolean parse (ByteBuffer in) throws BoggleMessage.Exception {
+    if (binary)
+      return parseFrame(in);
+    int start = in.position();
+    int limit = in.limit();
+    int end = start;
+    while (end < limit && in.get(end) != '\n')
+      end++;
+    if (end == limit) {
+      append(in, start, end);
+      in.position(limit);
+      return false;
+    }
+    in.position(end + 1);
+    if (lineLength == 0 && in.hasArray()) { // the whole line is in the buffer
+      int offset = in.arrayOffset();
+      split(in.array(), offset + start, offset + end);
+    } else {
+      append(in, start, end);
+      split(line, 0, lineLength);
+      lineLength = 0;
+    }
+    return true;
+  }
+
+  /** Switches to the binary protocol.  The bytes that follow the last
+   * line parsed are read as frames. */
+  public void setBinary () {
+    binary = true;
+  }
+
+  private boolean parseFrame (ByteBuffer in) throws BoggleMessage.Exception {
+    while (frameLength < 0) {
+      if (!in.hasRemaining())
+        return false;
+      int b = in.get();
+      varValue |= (b & 0x7F) << varShift;
+      varShift += 7;
+      if ((b & 0x80) == 0) {
+        frameLength = varValue;
+        varValue = varShift = 0;
+        if (frameLength < 1 || frameLength > maxLine)
+          throw new BoggleMessage.Exception("Bad frame length: " + frameLength);
+      } else if (varShift >= 35) {
+        throw new BoggleMessage.Exception("Malformed frame length");
+      }
+    }
+    int start = in.position();
+    if (lineLength == 0 && in.hasArray() && in.remaining() >= frameLength) {
+      int offset = in.arrayOffset();
+      in.position(start + frameLength);
+      decode(in.array(), offset + start, offset + start + frameLength);
+    } else {
+      int end = start + Math.min(in.remaining(), frameLength - lineLength);
+      append(in, start, end);
+      in.position(end);
+      if (lineLength < frameLength)
+        return false;
+      decode(line, 0, lineLength);
+      lineLength = 0;
+    }
+    frameLength = -1;
+    return true;
+  }
+
+  private void decode (byte[] b, int start, int end) throws BoggleMessage.Exception {
+    type = BinaryProtocol.type(b[start] & 0xFF);
+    if (type == null)
+      throw new BoggleMessage.Exception("Unknown frame type: " + (b[start] & 0xFF));
+    body.set(b, start + 1, end);
+    bodyString = body.ascii ? null : new String(b, start + 1, end - start - 1,
+                                                StandardCharsets.UTF_8);
+  }
+
+  private void append (ByteBuffer in, int start, int end) throws BoggleMessage.Exception {
+    int n = end - start;
+    if (lineLength + n > maxLine) {
+      lineLength = 0;
+      throw new BoggleMessage.Exception("Line too long");
+    }
+    if (lineLength + n > line.length)
+      line = java.util.Arrays.copyOf(line, Math.max(line.length * 2, lineLength + n));
+    for (int i = start; i < end; i++)
+      line[lineLength++] = in.get(i);
+  }
+
+  private void split (byte[] b, int start, int end) throws BoggleMessage.Exception {
+    if (end - start > maxLine)
+      throw new BoggleMessage.Exception("Line too long");
+    if (end > start && b[end - 1] == '\r')
+      end--;
+    int sep = start;
+    while (sep < end && b[sep] != BoggleMessage.SEPARATOR)
+      sep++;
+    if (sep == end)
+      throw new BoggleMessage.Exception("Missing separator");
+    body.set(b, start, sep);
+    type = BoggleMessage.type(body, 0, sep - start);
+    if (type == null)
+      throw new BoggleMessage.Exception("Unknown message type: " + body);
+    body.set(b, sep + 1, end);
+    bodyString = body.ascii ? null : new String(b, sep + 1, end - sep - 1,
+                                                StandardCharsets.UTF_8);
+  }
+
+  /** The type of the last line parsed. */
+  public BoggleMessage.Type type () {
+    return type;
+  }
+
+  /** The body of the last line parsed.  Unless the body contains
+   * non-ASCII characters, this is a view of the received bytes, which
+   * is only valid until the next call to {@code parse}.
+   */
+  public CharSequence body () {
+    return bodyString == null ? body : bodyString;
+  }
+
+  /** The body of the last line parsed, as a string. */
+  public String bodyString () {
+    if (bodyString == null)
+      bodyString = body.toString();
+    return bodyString;
+  }
+
+  /** The last line parsed, as a message. */
+  public BoggleMessage message () {
+    return new BoggleMessage(type, bodyString());
+  }
+
+  /** A range of bytes seen as characters */
+  private static class Bytes implements CharSequence {
+    private byte[] bytes;
+    private int start;
+    private int length;
+    /** Whether all the bytes are ASCII characters */
+    boolean ascii;
+
+    void set (byte[] b, int start, int end) {
+      bytes = b;
+      this.start = start;
+      length = end - start;
+      ascii = true;
+      for (int i = start; i < end; i++)
+        if (b[i] < 0) {
+          ascii = false;
+          break;
+        }
+    }
+
+    @Override public int length () {
+      return length;
+    }
+
+    @Override public char charAt (int i) {
+      if (i < 0 || i >= length)
+        throw new IndexOutOfBoundsException();
+      return (char)(bytes[start + i] & 0xFF);
+    }
+
+    @Override public CharSequence subSequence (int s, int e) {
+      if (s < 0 || e > length || s > e)
+        throw new IndexOutOfBoundsException();
+      return new String(bytes, start + s, e - s, StandardCharsets.UTF_8);
+    }
+
+    @Override public String toString () {
+      return new String(bytes, start, length, StandardCharsets.UTF_8);
+    }
+  }
+}
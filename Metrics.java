@@ -0,0 +1,341 @@
+package cs671;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters, gauges and latency histograms of a running server, by
+ * name.  Counters and histograms are updated without locks, so that
+ * they can be used on the hot paths of the server from any thread;
+ * gauges are only read when the metrics are queried or dumped.
+ *
+ * <p>Metrics are created on first use and live as long as the
+ * registry.  Values are cumulative since then: a dump shows, for each
+ * counter, its total and its rate since the previous dump, and for
+ * each histogram, percentiles over all its values.
+ *
+ * <p>The server uses the following names; latencies are in
+ * nanoseconds.
+ * <ul>
+ * <li>{@code connections.accepted}: connections accepted (counter)</li>
+ * <li>{@code connections.active}: live connections (gauge)</li>
+ * <li>{@code rooms}: game rooms, including the default one (gauge)</li>
+ * <li>{@code outbound.depth}, {@code outbound.depth.max}: messages
+ * waiting for clients, in total and on the longest queue (gauges)</li>
+ * <li>{@code dictionary.lookups}: submitted words looked up in the
+ * dictionary because they are not on the board (counter)</li>
+ * <li>{@code latency.}<i>type</i>: time from the moment a message of
+ * the given type is received to the end of its command in the room
+ * (histogram)</li>
+ * <li>{@code solver}: time to solve a board (histogram)</li>
+ * </ul>
+ *
+ * @author Chris Len
+ * @see BoggleServer
+ */
+public class Metrics {
+
+  /** A count of events. */
+  public static final class Counter {
+    private final LongAdder count = new LongAdder();
+
+    private Counter () { }
+
+    /** Counts one event. */
+    public void increment () {
+      count.increment();
+    }
+
+    /** Counts several events. */
+    public void add (long n) {
+      count.add(n);
+    }
+
+    /** The number of events so far. */
+    public long sum () {
+      return count.sum();
+    }
+  }
+
+  /** A value read when the metrics are queried. */
+  public interface Gauge {
+    /** The current value. */
+    long value ();
+  }
+
+  /** A histogram of non-negative values, such as latencies in
+   * nanoseconds.  As in HdrHistogram, values are counted in buckets
+   * whose width grows with the value: each power of two is split into
+   * {@code 2^SUB_BITS} buckets, so that a value is known within about
+   * 3%, whatever its magnitude, with a fixed and small number of
+   * buckets.  Values above {@code 2^MAX_BITS} are counted in the last
+   * bucket; the maximum is kept exactly.
+   */
+  public static final class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_BITS = 40; // about 18 minutes in nanoseconds
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    private Histogram () { }
+
+    /** Index of the bucket of a value */
+    private static int index (long v) {
+      if (v < SUB_COUNT)
+        return (int)Math.max(v, 0);
+      int shift = Math.min(63 - Long.numberOfLeadingZeros(v), MAX_BITS) - SUB_BITS;
+      int sub = (int)Math.min(v >>> shift, 2 * SUB_COUNT - 1);
+      return (shift + 1) * SUB_COUNT + sub - SUB_COUNT;
+    }
+
+    /** Highest value counted in a bucket */
+    private static long highest (int i) {
+      if (i < SUB_COUNT)
+        return i;
+      int shift = i / SUB_COUNT - 1;
+      long sub = i % SUB_COUNT + SUB_COUNT;
+      return ((sub + 1) << shift) - 1;
+    }
+
+    /** Records a value.
+     *
+     * @param v the value; negative values are counted as 0
+     */
+    public void record (long v) {
+      counts.incrementAndGet(index(v));
+      count.increment();
+      total.add(Math.max(v, 0));
+      long m = max.get();
+      while (v > m && !max.compareAndSet(m, v))
+        m = max.get();
+    }
+
+    /** The number of values recorded. */
+    public long count () {
+      return count.sum();
+    }
+
+    /** The mean of the values recorded, or 0 if there are none. */
+    public double mean () {
+      long n = count.sum();
+      return n == 0 ? 0 : (double)total.sum() / n;
+    }
+
+    /** The largest value recorded, or 0 if there are none. */
+    public long max () {
+      return max.get();
+    }
+
+    /** A percentile of the values recorded: the value that the given
+     * percentage of values do not exceed, within the precision of the
+     * histogram.
+     *
+     * @param p the percentage, in [0..100]
+     * @return the percentile, or 0 if there are no values
+     * @throws IllegalArgumentException if {@code p} is out of range
+     */
+    public long percentile (double p) {
+      if (!(p >= 0 && p <= 100))
+        throw new IllegalArgumentException("Percentage out of range: " + p);
+      long[] c = new long[BUCKETS];
+      long n = 0;
+      for (int i = 0; i < BUCKETS; i++)
+        n += c[i] = counts.get(i);
+      long rank = Math.max((long)Math.ceil(p / 100 * n), 1);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += c[i];
+        if (seen >= rank)
+          return Math.min(highest(i), max.get());
+      }
+      return 0;
+    }
+  }
+
+  private static class Shared {
+    static final Metrics METRICS = new Metrics();
+  }
+
+  private final ConcurrentMap<String,Counter> counters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String,Gauge> gauges = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String,Histogram> histograms = new ConcurrentHashMap<>();
+  private Thread dumper;
+
+  /** The registry of the process, used by the server. */
+  public static Metrics shared () {
+    return Shared.METRICS;
+  }
+
+  /** The counter of a given name, created if needed.  Callers on hot
+   * paths should keep the counter rather than look it up each time.
+   *
+   * @param name the name of the counter
+   * @return the counter
+   */
+  public Counter counter (String name) {
+    Counter c = counters.get(name);
+    if (c == null) {
+      Counter n = new Counter();
+      c = counters.putIfAbsent(name, n);
+      if (c == null)
+        c = n;
+    }
+    return c;
+  }
+
+  /** The histogram of a given name, created if needed.  Callers on hot
+   * paths should keep the histogram rather than look it up each time.
+   *
+   * @param name the name of the histogram
+   * @return the histogram
+   */
+  public Histogram histogram (String name) {
+    Histogram h = histograms.get(name);
+    if (h == null) {
+      Histogram n = new Histogram();
+      h = histograms.putIfAbsent(name, n);
+      if (h == null)
+        h = n;
+    }
+    return h;
+  }
+
+  /** Registers a gauge.  It replaces any gauge of the same name.
+   *
+   * @param name the name of the gauge
+   * @param g the gauge
+   */
+  public void gauge (String name, Gauge g) {
+    gauges.put(name, g);
+  }
+
+  /** The names of all the metrics, in order. */
+  public SortedSet<String> names () {
+    SortedSet<String> names = new TreeSet<>(counters.keySet());
+    names.addAll(gauges.keySet());
+    names.addAll(histograms.keySet());
+    return names;
+  }
+
+  /** The value of a counter or a gauge, or the number of values of a
+   * histogram.
+   *
+   * @param name the name of the metric
+   * @return its value
+   * @throws IllegalArgumentException if there is no such metric
+   */
+  public long value (String name) {
+    Counter c = counters.get(name);
+    if (c != null)
+      return c.sum();
+    Gauge g = gauges.get(name);
+    if (g != null)
+      return g.value();
+    Histogram h = histograms.get(name);
+    if (h != null)
+      return h.count();
+    throw new IllegalArgumentException("No metric named " + name);
+  }
+
+  /** All the metrics on one line: counters and gauges by value, then
+   * histograms by count, median, 99th percentile and maximum. */
+  public String dump () {
+    return dump(null, 0);
+  }
+
+  /** The metrics on one line, with the rate of each counter since
+   * {@code previous} if it is not null; updates {@code previous} */
+  private String dump (Map<String,Long> previous, long nanos) {
+    StringBuilder b = new StringBuilder("metrics");
+    for (Map.Entry<String,Counter> e : new TreeMap<>(counters).entrySet()) {
+      long v = e.getValue().sum();
+      b.append(' ').append(e.getKey()).append('=').append(v);
+      if (previous != null) {
+        Long last = previous.put(e.getKey(), v);
+        if (last != null && nanos > 0)
+          b.append(String.format(" (%+.1f/s)", (v - last) * 1e9 / nanos));
+      }
+    }
+    for (Map.Entry<String,Gauge> e : new TreeMap<>(gauges).entrySet())
+      b.append(' ').append(e.getKey()).append('=').append(e.getValue().value());
+    for (Map.Entry<String,Histogram> e : new TreeMap<>(histograms).entrySet()) {
+      Histogram h = e.getValue();
+      b.append(' ').append(e.getKey()).append(" n=").append(h.count());
+      if (h.count() > 0) {
+        b.append(" p50=").append(duration(h.percentile(50)))
+         .append(" p99=").append(duration(h.percentile(99)))
+         .append(" max=").append(duration(h.max()));
+      }
+    }
+    return b.toString();
+  }
+
+  /** A duration in nanoseconds, in a short form */
+  private static String duration (long nanos) {
+    if (nanos < 1000)
+      return nanos + "ns";
+    if (nanos < 1000000)
+      return String.format("%.1fus", nanos / 1e3);
+    if (nanos < 1000000000)
+      return String.format("%.1fms", nanos / 1e6);
+    return String.format("%.1fs", nanos / 1e9);
+  }
+
+  /** Prints {@link #dump} periodically on a daemon thread, with the
+   * rate of each counter over the period.  It replaces any dump
+   * started earlier.
+   *
+   * @param out where to print
+   * @param period the time between two dumps
+   * @param unit the unit of the period
+   * @throws IllegalArgumentException if the period is not positive
+   */
+  public synchronized void startDump (final PrintStream out, long period, TimeUnit unit) {
+    if (period <= 0)
+      throw new IllegalArgumentException("Period must be positive");
+    stopDump();
+    final long nanos = unit.toNanos(period);
+    dumper = new Thread(new Runnable() {
+        @Override
+        public void run () {
+          Map<String,Long> previous = new HashMap<>();
+          long last = System.nanoTime();
+          dump(previous, 0);
+          try {
+            while (true) {
+              TimeUnit.NANOSECONDS.sleep(nanos);
+              long now = System.nanoTime();
+              out.println(dump(previous, now - last));
+              last = now;
+            }
+          } catch (InterruptedException e) {
+            // stopped
+          }
+        }
+      }, "metrics");
+    dumper.setDaemon(true);
+    dumper.start();
+  }
+
+  /** Stops the periodic dump, if any. */
+  public synchronized void stopDump () {
+    if (dumper != null) {
+      dumper.interrupt();
+      dumper = null;
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package cs671;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** A non-blocking server for the Boggle game.  This server implements
+ * the same protocol as {@code BoggleServer}, but instead of using one
+ * thread per connection it multiplexes all the connections over a
+ * small number of event loops, each one running a
+ * {@code java.nio.channels.Selector} on its own thread.  The first
+ * loop also accepts new connections, which are then handed to the
+ * loops in turn.
+ *
+ * <p>Each connection has its own read buffer and message parser, which
+ * frames lines directly from the received bytes, and its own bounded
+ * queue of outgoing messages.  Messages sent to a player from any
+ * thread are queued and written by the event loop of the connection
+ * when the socket is ready, so that a slow client never blocks the
+ * thread that sends to it.  Complete lines are parsed on the event
+ * loop thread and handed off to the game manager of the player's room,
+ * whose commands go through the room's mailbox.
+ *
+ * @author Chris Len
+ * @see BoggleServer
+ */
+public class NioBoggleServer {
+    /** Longest line accepted from a client */
+    private static final int MAX_LINE = MessageParser.DEFAULT_MAX_LINE;
+    /** Port number used to connect the server */
+    private final int port;
+    /** Game rooms of the server */
+    private final RoomRegistry rooms;
+    /** Event loops; the first one also accepts connections */
+    private final EventLoop[] loops;
+    /** Channel used to accept connections */
+    private ServerSocketChannel listener;
+    /** Determines if the event loops keep running */
+    private volatile boolean running;
+    /** Loop that gets the next accepted connection */
+    private int next;
+    /** Live connections */
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    /** Size of the outbound queue of each connection */
+    private int queueCapacity = OutboundQueue.DEFAULT_CAPACITY;
+    /** What to do when an outbound queue is full */
+    private OutboundQueue.Overflow overflow = OutboundQueue.Overflow.DROP_OLDEST_TEXT;
+
+  /** Creates a server
+   *
+   * @param port the port number ([0..65535])
+   * @param g a game manager
+   * @param threads the number of event loops
+   * @throws IllegalArgumentException if there is not at least one loop
+   */
+  public NioBoggleServer (int port, BoggleGameManager g, int threads) {
+    this(port, new RoomRegistry(g), threads);
+  }
+
+  /** Creates a server that hosts several game rooms
+   *
+   * @param port the port number ([0..65535])
+   * @param rooms the rooms, whose default room is used by players who
+   * do not name one
+   * @param threads the number of event loops
+   * @throws IllegalArgumentException if there is not at least one loop
+   */
+  public NioBoggleServer (int port, RoomRegistry rooms, int threads) {
+    if(threads < 1) { throw new IllegalArgumentException("Need at least one event loop"); }
+    this.port = port;
+    this.rooms = rooms;
+    loops = new EventLoop[threads];
+  }
+
+  /** Sets the limits of the outbound queues of new connections.
+   *
+   * @param capacity the number of messages a queue can hold
+   * @param policy what to do when a queue is full
+   * @throws IllegalArgumentException if the capacity is less than 1
+   */
+  public synchronized void setOutboundLimit (int capacity, OutboundQueue.Overflow policy) {
+    if(capacity < 1) { throw new IllegalArgumentException("Capacity must be at least one"); }
+    queueCapacity = capacity;
+    overflow = policy;
+  }
+
+  /** The players currently connected, with their outbound queues.
+   *
+   * @return a live, read-only view of the connections
+   */
+  public Collection<? extends QueuedPlayer> getConnections () {
+    return Collections.unmodifiableSet(connections);
+  }
+
+  /** Starts listening and accepting connections. */
+  public synchronized void start () throws IOException {
+    if(running) {
+        return;
+    }
+    listener = ServerSocketChannel.open();
+    listener.bind(new InetSocketAddress(port));
+    listener.configureBlocking(false);
+    for(int i = 0; i < loops.length; i++) {
+        loops[i] = new EventLoop(i);
+    }
+    listener.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    BoggleServer.registerGauges(rooms, connections);
+    running = true;
+    for(EventLoop loop : loops) {
+        new Thread(loop, "Boggle event loop " + loop.id).start();
+    }
+  }
+
+  /** Stops the server.  Connections are closed.  The server can later be
+   * restarted. */
+  public synchronized void stop () {
+    running = false;
+    for(EventLoop loop : loops) {
+        if(loop != null) {
+            loop.selector.wakeup();
+        }
+    }
+  }
+
+  /**
+   * One selector and the thread that runs it.  Other threads never touch
+   * the selector's keys directly; they submit tasks which the loop runs
+   * between two selections.
+   */
+  class EventLoop implements Runnable {
+    final int id;
+    final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    EventLoop (int id) throws IOException {
+        this.id = id;
+        selector = Selector.open();
+    }
+
+    /** Runs a task on this loop's thread */
+    void execute (Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run () {
+        try {
+            while(running) {
+                selector.select();
+                Runnable task;
+                while((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()) {
+                        continue;
+                    }
+                    if(key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection c = (Connection)key.attachment();
+                    try {
+                        if(key.isReadable()) {
+                            c.read();
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            c.write();
+                        }
+                    }
+                    catch(RuntimeException e) { // never let one client stop the loop
+                        System.out.println("ERROR: " + e.getMessage());
+                        c.close();
+                    }
+                }
+            }
+        }
+        catch(IOException e) {
+            System.err.println("Event loop failed on port " + port + ": " + e.getMessage());
+        }
+        finally {
+            for(SelectionKey key : selector.keys()) {
+                if(key.attachment() instanceof Connection) {
+                    ((Connection)key.attachment()).close();
+                }
+            }
+            try {
+                selector.close();
+                if(id == 0) { listener.close(); }
+            }
+            catch(IOException e) { }
+        }
+    }
+  }
+
+  /** Accepts all pending connections and hands them to the loops in turn */
+  private void accept () throws IOException {
+    SocketChannel ch;
+    while((ch = listener.accept()) != null) {
+        BoggleServer.ACCEPTED.increment();
+        ch.configureBlocking(false);
+        ch.socket().setTcpNoDelay(true);
+        final EventLoop loop = loops[next];
+        next = (next + 1) % loops.length;
+        final Connection c = new Connection(ch, loop);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                c.attach();
+            }
+        });
+    }
+  }
+
+  /**
+   * A client connection.  The connection is the player used by the game
+   * manager: sending a message to the player queues it on the connection,
+   * and the event loop writes it when the socket can take it.
+   */
+  class Connection extends QueuedPlayer {
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private SelectionKey key;
+    private final ByteBuffer in = ByteBuffer.allocate(4096);
+    /** Frames and parses the lines received */
+    private final MessageParser parser = new MessageParser(MAX_LINE);
+    /** View of the message being written, if the socket could not take all of it */
+    private ByteBuffer pending;
+    private boolean closed;
+    /** Whether the loop has been asked to write this connection */
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final Runnable enableWrite = new Runnable() {
+        @Override
+        public void run() {
+            if(key != null && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    };
+    private final Runnable close = new Runnable() {
+        @Override
+        public void run() {
+            close();
+        }
+    };
+
+    Connection (SocketChannel ch, EventLoop loop) {
+        super(queueCapacity, overflow);
+        channel = ch;
+        this.loop = loop;
+        connections.add(this);
+    }
+
+    /** Registers the connection with its loop; runs on the loop's thread */
+    void attach () {
+        try {
+            key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+            if(outbound.depth() > 0) {
+                enableWrite.run();
+            }
+        }
+        catch(IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    protected void queued () {
+        if(writing.compareAndSet(false, true)) {
+            loop.execute(enableWrite);
+        }
+    }
+
+    @Override
+    public void disconnect () {
+        loop.execute(close);
+    }
+
+    /** Reads what is available and handles every complete line */
+    void read () {
+        int n;
+        try {
+            n = channel.read(in);
+        }
+        catch(IOException e) {
+            n = -1;
+        }
+        if(n < 0) {
+            close();
+            return;
+        }
+        in.flip();
+        try {
+            while(parser.parse(in)) {
+                if(!BoggleServer.handle(rooms, this, parser)) {
+                    close();
+                    return;
+                }
+            }
+        }
+        catch(BoggleMessage.Exception e) {
+            System.out.println("Incoherent message from client.  Quitting...");
+            close();
+            return;
+        }
+        catch(RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            close();
+            return;
+        }
+        in.clear();
+    }
+
+    /** Writes queued messages until the socket is full or the queue empty */
+    void write () {
+        try {
+            while(true) {
+                if(pending == null) {
+                    BoggleMessage m = outbound.poll();
+                    if(m == null) {
+                        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                        writing.set(false);
+                        // A message may have been queued after poll
+                        if(outbound.depth() == 0 || !writing.compareAndSet(false, true)) {
+                            return;
+                        }
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        continue;
+                    }
+                    pending = encode(m); // usually shared with the other recipients
+                }
+                channel.write(pending);
+                if(pending.hasRemaining()) {
+                    return;
+                }
+                pending = null;
+            }
+        }
+        catch(IOException e) {
+            close();
+        }
+    }
+
+    /** Closes the connection and removes the player from the game */
+    void close () {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        connections.remove(this);
+        if(key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        }
+        catch(IOException e) { }
+        outbound.close();
+        if(getRoom() != null) {
+            try {
+                BoggleServer.disconnect(rooms, this);
+            }
+            catch(RuntimeException e) {
+                System.out.println("ERROR: " + e.getMessage());
+            }
+            System.out.println("Server client terminated.");
+        }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package cs671;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** A bounded queue of messages waiting to be written to a client.
+ * Any thread can add messages; a single writer (a thread or an event
+ * loop) removes them.  Adding never waits for the client: when the
+ * queue is full, the overflow policy decides whether the oldest
+ * {@code TEXT} message is dropped to make room or the connection is
+ * given up.  A queue keeps a few counters that can be used to monitor
+ * slow clients.
+ *
+ * @author Chris Len
+ * @see QueuedPlayer
+ */
+public class OutboundQueue {
+
+  /** What to do with a new message when the queue is full. */
+  public static enum Overflow {
+    /** Drop the oldest {@code TEXT} message; if the queue only holds
+     * other messages, disconnect.
+     */
+    DROP_OLDEST_TEXT,
+    /** Disconnect the client. */
+    DISCONNECT
+  }
+
+  /** Default number of messages a queue can hold. */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private final ArrayDeque<BoggleMessage> queue = new ArrayDeque<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final int capacity;
+  private final Overflow overflow;
+  private boolean closed;
+  private volatile int depth;
+  private volatile int maxDepth;
+  private volatile long dropped;
+
+  /** Creates an empty queue.
+   *
+   * @param capacity the maximum number of messages in the queue
+   * @param overflow what to do when the queue is full
+   * @throws IllegalArgumentException if the capacity is less than 1
+   */
+  public OutboundQueue (int capacity, Overflow overflow) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be at least one");
+    this.capacity = capacity;
+    this.overflow = overflow;
+  }
+
+  /** Adds a message at the end of the queue.  This never blocks.
+   *
+   * @param m the message
+   * @return false if the queue overflowed and the client must be
+   * disconnected; the queue is then closed
+   */
+  public boolean offer (BoggleMessage m) {
+    lock.lock();
+    try {
+      if (closed)
+        return true;
+      if (queue.size() >= capacity
+          && (overflow == Overflow.DISCONNECT || !dropOldestText())) {
+        closeLocked();
+        return false;
+      }
+      queue.addLast(m);
+      depth = queue.size();
+      if (depth > maxDepth)
+        maxDepth = depth;
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean dropOldestText () {
+    for (Iterator<BoggleMessage> i = queue.iterator(); i.hasNext();) {
+      if (i.next().type == BoggleMessage.Type.TEXT) {
+        i.remove();
+        dropped++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Removes the first message, if any.
+   *
+   * @return the first message, or {@code null} if the queue is empty
+   */
+  public BoggleMessage poll () {
+    lock.lock();
+    try {
+      BoggleMessage m = queue.pollFirst();
+      depth = queue.size();
+      return m;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Removes the first message, waiting for one if needed.
+   *
+   * @return the first message, or {@code null} once the queue is
+   * closed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public BoggleMessage take () throws InterruptedException {
+    lock.lock();
+    try {
+      while (queue.isEmpty() && !closed)
+        notEmpty.await();
+      BoggleMessage m = queue.pollFirst();
+      depth = queue.size();
+      return m;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Closes the queue.  Pending messages are discarded, new ones are
+   * ignored and a writer waiting in {@code take} is released. */
+  public void close () {
+    lock.lock();
+    try {
+      closeLocked();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void closeLocked () {
+    closed = true;
+    queue.clear();
+    depth = 0;
+    notEmpty.signalAll();
+  }
+
+  /** Number of messages currently waiting. */
+  public int depth () {
+    return depth;
+  }
+
+  /** Largest number of messages that have been waiting at once. */
+  public int maxDepth () {
+    return maxDepth;
+  }
+
+  /** Number of {@code TEXT} messages dropped because of overflows. */
+  public long dropped () {
+    return dropped;
+  }
+}
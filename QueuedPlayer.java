@@ -0,0 +1,112 @@
+package cs671;
+
+import java.nio.ByteBuffer;
+
+/** A player connected to a server.  Messages sent to the player are
+ * not written to the network by the sending thread: they go to the
+ * player's outbound queue, from which the connection's writer takes
+ * them.  A game manager can therefore broadcast to all its players
+ * without ever waiting for a slow one.
+ *
+ * @author Chris Len
+ * @see OutboundQueue
+ */
+public abstract class QueuedPlayer extends Player {
+    /** Messages waiting to be written to the client */
+    protected final OutboundQueue outbound;
+    /** Word numbers of the binary protocol, or null for the text protocol */
+    private volatile BinaryProtocol binary;
+    /** Room the player joined, or null before JOIN */
+    private volatile RoomRegistry.Room room;
+
+    /**
+     * Constructs a player without a name initially
+     * @param capacity Maximum number of messages waiting for the client
+     * @param overflow What to do when too many messages are waiting
+     */
+    protected QueuedPlayer(int capacity, OutboundQueue.Overflow overflow) {
+        outbound = new OutboundQueue(capacity, overflow);
+    }
+
+    @Override
+    public void sendMessage(BoggleMessage msg) {
+        if(outbound.offer(msg)) {
+            queued();
+        }
+        else {
+            overflowed();
+        }
+    }
+
+    /**
+     * Called after a message is queued, from the sending thread; wakes up
+     * the writer if needed
+     */
+    protected abstract void queued();
+
+    /**
+     * Called when the outbound queue overflows, from the sending thread;
+     * disconnects the client
+     */
+    protected void overflowed() {
+        System.out.println("Client " + getName() + " is too slow.  Disconnecting...");
+        disconnect();
+    }
+
+    /**
+     * Closes the connection of the player, from any thread.  The player
+     * leaves its room once the connection is closed.
+     */
+    public abstract void disconnect();
+
+    /**
+     * 
+     * @return The room the player joined, or null if it has not joined yet
+     */
+    public RoomRegistry.Room getRoom() {
+        return room;
+    }
+
+    /**
+     * Sets the room of the player
+     * @param r Room the player joined
+     */
+    public void setRoom(RoomRegistry.Room r) {
+        room = r;
+    }
+
+    /**
+     * Switches the player to the binary protocol; messages queued from now
+     * on are written as frames
+     */
+    public void useBinary() {
+        binary = new BinaryProtocol();
+    }
+
+    /**
+     * 
+     * @return The binary protocol of the player, or null if it uses the
+     * text protocol
+     */
+    public BinaryProtocol getBinary() {
+        return binary;
+    }
+
+    /**
+     * Encodes a message the way the client expects it
+     * @param m Message taken from the outbound queue
+     * @return A buffer holding the line or frame, ready to be read
+     */
+    public ByteBuffer encode(BoggleMessage m) {
+        BinaryProtocol b = binary;
+        return b == null ? m.encode() : b.encode(m);
+    }
+
+    /**
+     * 
+     * @return The queue of messages waiting to be written to the client
+     */
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+}
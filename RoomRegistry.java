@@ -0,0 +1,145 @@
+package cs671;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/** The game rooms of a server.  Each room is a separate game, with its
+ * own game manager, board and players.  Rooms are created when a
+ * player first joins them and disposed of when their last player
+ * leaves, except for the default room, which always exists.
+ *
+ * <p>The commands of each room go through the mailbox of its game
+ * manager, which runs them one at a time.  The mailboxes of all the
+ * rooms are drained by a pool of worker threads, one per core by
+ * default, so that thousands of small games are played in parallel on
+ * all the cores; an idle worker takes over any room that has commands
+ * waiting.
+ *
+ * @author Chris Len
+ * @see BoggleGameManager
+ */
+public class RoomRegistry {
+
+  /** Name of the room of players who do not name one. */
+  public static final String DEFAULT_ROOM = "lobby";
+
+  /** A game room.  Commands for the room's game manager must be run
+   * with {@code execute}.
+   */
+  public static class Room {
+    private final String name;
+    private final BoggleGameManager game;
+    /** Players in the room; guarded by the registry */
+    private int members;
+
+    Room (String name, BoggleGameManager game) {
+      this.name = name;
+      this.game = game;
+    }
+
+    /** The name of the room. */
+    public String getName () {
+      return name;
+    }
+
+    /** The game manager of the room. */
+    public BoggleGameManager getGame () {
+      return game;
+    }
+
+    /** Runs a command on the room's game.  Commands of a room run one
+     * at a time, in the order they are submitted.
+     *
+     * @param command the command
+     * @see BoggleGameManager#execute
+     */
+    public void execute (Runnable command) {
+      game.execute(command);
+    }
+  }
+
+  private final BoggleGameManager lobby;
+  private final Map<String,Room> rooms = new HashMap<>();
+  /** Drains the mailboxes of the rooms */
+  private final ForkJoinPool workers;
+
+  /** Creates a registry with one worker thread per core.
+   *
+   * @param lobby the game manager of the default room; other rooms
+   * get managers with the same board size, dictionary, dice and timer
+   */
+  public RoomRegistry (BoggleGameManager lobby) {
+    this(lobby, Runtime.getRuntime().availableProcessors());
+  }
+
+  /** Creates a registry.
+   *
+   * @param lobby the game manager of the default room; other rooms
+   * get managers with the same board size, dictionary, dice and timer
+   * @param threads the number of worker threads
+   * @throws IllegalArgumentException if there is not at least one thread
+   */
+  public RoomRegistry (BoggleGameManager lobby, int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("Need at least one worker thread");
+    this.lobby = lobby;
+    // FIFO scheduling: mailboxes are served in the order they get work
+    workers = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                               null, true);
+    rooms.put(DEFAULT_ROOM, newRoom(DEFAULT_ROOM, lobby));
+  }
+
+  private Room newRoom (String name, BoggleGameManager game) {
+    game.setExecutor(workers);
+    return new Room(name, game);
+  }
+
+  /** Enters a room, creating it if needed.
+   *
+   * @param name the name of the room
+   * @return the room
+   */
+  public synchronized Room join (String name) {
+    Room r = rooms.get(name);
+    if (r == null) {
+      r = newRoom(name, lobby.newRoom());
+      rooms.put(name, r);
+    }
+    r.members++;
+    return r;
+  }
+
+  /** Leaves a room.  A room other than the default one is disposed of
+   * when its last player leaves; a player who then joins a room of the
+   * same name gets a new game.
+   *
+   * @param r the room
+   */
+  public synchronized void leave (final Room r) {
+    if (--r.members > 0 || r.name.equals(DEFAULT_ROOM))
+      return;
+    if (rooms.remove(r.name) != null) {
+      r.execute(new Runnable() {
+          @Override
+          public void run () {
+            r.game.setTimer(0); // after its last commands
+          }
+        });
+    }
+  }
+
+  /** The room of a given name, if it exists.
+   *
+   * @param name the name of the room
+   * @return the room, or {@code null}
+   */
+  public synchronized Room get (String name) {
+    return rooms.get(name);
+  }
+
+  /** The number of rooms, including the default one. */
+  public synchronized int size () {
+    return rooms.size();
+  }
+}
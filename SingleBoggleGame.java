@@ -136,7 +136,7 @@ public class SingleBoggleGame implements Runnable {
        "-size <number> : creates a square board\n"+
        "-size <number>x<number> : creates a rectangular board\n"+
        "-length <number> : minimal length for valid words\n"+
-       "-dict <file> : dictionary filename\n"+
+       "-dict <file> : dictionary filename (word list or .dict snapshot)\n"+
        "-dice <file> : dice definition filename\n\n"+
        "default is: -size 4 -length 3 -dict words.txt -dice dice.txt");
   }
@@ -146,7 +146,7 @@ public class SingleBoggleGame implements Runnable {
    -size &lt;number&gt; : creates a square board
    -size &lt;number&gt;x&lt;number&gt; : creates a rectangular board
    -length &lt;number&gt; : minimal length for valid words
-   -dict &lt;file&gt; : dictionary filename
+   -dict &lt;file&gt; : dictionary filename (word list or .dict snapshot)
    -dice &lt;file&gt; : dice definition filename
    default is: -size 4 -length 3 -dict words.txt -dice dice.txt
    </pre>
@@ -201,21 +201,31 @@ public class SingleBoggleGame implements Runnable {
         break;
       }
     }
-    InputStream dictStream
-      = SingleBoggleGame.class.getResourceAsStream(dictName);
-    if (dictStream == null) {
-      System.err.println("Cannot open dictionary file");
-      return;
-    }
-   Set<String> words = new java.util.HashSet<>();
-   Scanner in = new Scanner(dictStream);
-   while (in.hasNext()) {
-     String w = in.next();
-     if (w.length() >= minLength)
-       words.add(w.toUpperCase());
+   BoggleDictionary dict;
+   if (dictName.endsWith(BoggleDictionary.SNAPSHOT_SUFFIX)) {
+     try {
+       dict = BoggleDictionary.load(new java.io.File(dictName));
+     } catch (java.io.IOException e) {
+       System.err.println("Cannot open dictionary file");
+       return;
+     }
+     if (dict.minLength() < minLength)
+       System.err.printf("Snapshot has words shorter than %d.%n", minLength);
+   } else {
+     InputStream dictStream
+       = SingleBoggleGame.class.getResourceAsStream(dictName);
+     if (dictStream == null) {
+       System.err.println("Cannot open dictionary file");
+       return;
+     }
+     try {
+       dict = WordListLoader.load(dictStream, minLength);
+       dictStream.close();
+     } catch (java.io.IOException e) {
+       System.err.println("Cannot read dictionary file");
+       return;
+     }
    }
-   in.close();
-   BoggleDictionary dict = new BoggleDictionary(words);
    InputStream diceStream
      = SingleBoggleGame.class.getResourceAsStream(diceName);
    if (diceStream == null) {
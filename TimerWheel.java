@@ -0,0 +1,222 @@
+package cs671;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Deadlines for many games, driven by a single thread.  Timeouts are
+ * kept in a hashed wheel: a circular array of buckets, one per tick,
+ * in which a timeout due in {@code n} ticks goes {@code n} buckets
+ * ahead of the current one, with the number of full turns of the wheel
+ * left before it is due.  Scheduling and cancelling a timeout take
+ * constant time, whatever the number of timeouts.  Deadlines are only
+ * as precise as the tick, which is plenty for game timers counted in
+ * seconds.
+ *
+ * <p>Any thread can schedule or cancel a timeout; both are queued and
+ * applied to the wheel by the ticker thread, which owns the buckets.
+ * The task of an expired timeout runs on the ticker thread, so it must
+ * be short: game managers only post a command to their mailbox.
+ *
+ * @author Chris Len
+ * @see BoggleGameManager
+ */
+public class TimerWheel {
+
+  /** Default duration of a tick, in milliseconds. */
+  public static final int DEFAULT_TICK = 100;
+
+  /** Default number of buckets of the wheel. */
+  public static final int DEFAULT_SIZE = 512;
+
+  private static final int PENDING = 0;
+  private static final int CANCELLED = 1;
+  private static final int EXPIRED = 2;
+
+  /** A scheduled task.  It can be cancelled until it expires. */
+  public static final class Timeout {
+    private final TimerWheel wheel;
+    private final Runnable task;
+    /** Deadline, in nanoseconds since the wheel started */
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    /** Turns of the wheel left; used by the ticker thread only */
+    private long rounds;
+    private Timeout prev, next;
+    private Bucket bucket;
+
+    private Timeout (TimerWheel wheel, Runnable task, long deadline) {
+      this.wheel = wheel;
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /** Cancels this timeout.
+     *
+     * @return true if the timeout was pending and will not run
+     */
+    public boolean cancel () {
+      if (!state.compareAndSet(PENDING, CANCELLED))
+        return false;
+      wheel.cancelled.add(this);
+      return true;
+    }
+
+    /** Whether this timeout was cancelled. */
+    public boolean isCancelled () {
+      return state.get() == CANCELLED;
+    }
+
+    /** Whether this timeout expired and its task was run. */
+    public boolean isExpired () {
+      return state.get() == EXPIRED;
+    }
+  }
+
+  /** Timeouts of one slot of the wheel, as a doubly linked list */
+  private static final class Bucket {
+    private Timeout head, tail;
+
+    void add (Timeout t) {
+      t.bucket = this;
+      if (head == null) {
+        head = tail = t;
+      } else {
+        tail.next = t;
+        t.prev = tail;
+        tail = t;
+      }
+    }
+
+    void remove (Timeout t) {
+      if (t.prev == null)
+        head = t.next;
+      else
+        t.prev.next = t.next;
+      if (t.next == null)
+        tail = t.prev;
+      else
+        t.next.prev = t.prev;
+      t.prev = t.next = null;
+      t.bucket = null;
+    }
+
+    /** Runs the timeouts that are due and counts down the others */
+    void expire (long now) {
+      Timeout t = head;
+      while (t != null) {
+        Timeout next = t.next;
+        if (t.rounds <= 0 && t.deadline <= now) {
+          remove(t);
+          if (t.state.compareAndSet(PENDING, EXPIRED)) {
+            try {
+              t.task.run();
+            } catch (RuntimeException e) { // one bad task must not stop the others
+              System.err.println("Timer task failed: " + e);
+            }
+          }
+        } else if (t.rounds > 0) {
+          t.rounds--;
+        }
+        t = next;
+      }
+    }
+  }
+
+  private static class Shared {
+    static final TimerWheel WHEEL = new TimerWheel(DEFAULT_TICK, DEFAULT_SIZE);
+  }
+
+  private final long tick;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final long start = System.nanoTime();
+  private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+  private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+  private final Thread ticker;
+  private volatile boolean running = true;
+  /** Ticks done; used by the ticker thread only */
+  private long ticks;
+
+  /** The wheel shared by all the game managers of the process, with a
+   * tick of {@code DEFAULT_TICK} milliseconds.  It is started on first
+   * use. */
+  public static TimerWheel shared () {
+    return Shared.WHEEL;
+  }
+
+  /** Creates and starts a wheel.  Its ticker is a daemon thread.
+   *
+   * @param tickMillis the duration of a tick, in milliseconds
+   * @param size the number of buckets, rounded up to a power of two
+   * @throws IllegalArgumentException if the tick or the size is not
+   * positive
+   */
+  public TimerWheel (int tickMillis, int size) {
+    if (tickMillis < 1 || size < 1)
+      throw new IllegalArgumentException("Tick and size must be positive");
+    tick = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    int n = Integer.highestOneBit(size);
+    if (n < size)
+      n <<= 1;
+    wheel = new Bucket[n];
+    for (int i = 0; i < n; i++)
+      wheel[i] = new Bucket();
+    mask = n - 1;
+    ticker = new Thread(new Runnable() {
+        @Override
+        public void run () {
+          tick();
+        }
+      }, "timer-wheel");
+    ticker.setDaemon(true);
+    ticker.start();
+  }
+
+  /** Schedules a task.
+   *
+   * @param task the task, run on the ticker thread when the delay expires
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @return the timeout, which can be used to cancel the task
+   */
+  public Timeout schedule (Runnable task, long delay, TimeUnit unit) {
+    Timeout t = new Timeout(this, task, System.nanoTime() - start + unit.toNanos(delay));
+    added.add(t);
+    return t;
+  }
+
+  /** Stops the ticker thread.  Pending timeouts never expire. */
+  public void stop () {
+    running = false;
+    ticker.interrupt();
+  }
+
+  private void tick () {
+    while (running) {
+      long wait = (ticks + 1) * tick - (System.nanoTime() - start);
+      if (wait > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+          continue; // stopping
+        }
+      }
+      Timeout t;
+      while ((t = cancelled.poll()) != null) {
+        if (t.bucket != null)
+          t.bucket.remove(t);
+      }
+      while ((t = added.poll()) != null) {
+        if (t.state.get() != PENDING)
+          continue;
+        long due = t.deadline / tick; // never in the past
+        t.rounds = (due - ticks) / wheel.length;
+        wheel[(int)(Math.max(due, ticks) & mask)].add(t);
+      }
+      wheel[(int)(ticks & mask)].expire(System.nanoTime() - start);
+      ticks++;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package cs671;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Reads word lists into dictionaries.  A word list is a text file of
+ * words separated by whitespaces.  Files are memory-mapped and other
+ * streams are read in large blocks; words are then cut directly from
+ * the bytes, upper-cased while they are copied out and filtered by
+ * length, without going through a {@code Scanner} or an intermediate
+ * set.  Only ASCII letters make up words; a word that contains any
+ * other byte is dropped, since the dictionary could not store it.
+ *
+ * @author Chris Len
+ * @see BoggleDictionary
+ */
+public class WordListLoader {
+
+  private WordListLoader () { }
+
+  /** Loads a word list from a file.  The file is memory-mapped.
+   *
+   * @param f the word list
+   * @param minLength the minimal length of the words to keep
+   * @return a dictionary of the words of at least {@code minLength}
+   * letters, in upper case
+   * @throws IOException if the file cannot be read
+   */
+  public static BoggleDictionary load (File f, int minLength) throws IOException {
+    try (FileChannel ch = FileChannel.open(f.toPath())) {
+      long size = ch.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Word list too large: " + f);
+      }
+      return load(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), minLength);
+    }
+  }
+
+  /** Loads a word list from a stream.  The stream is read to the end
+   * but not closed.
+   *
+   * @param in the word list
+   * @param minLength the minimal length of the words to keep
+   * @return a dictionary of the words of at least {@code minLength}
+   * letters, in upper case
+   * @throws IOException if the stream cannot be read
+   */
+  public static BoggleDictionary load (InputStream in, int minLength) throws IOException {
+    byte[] buf = new byte[1 << 16];
+    int n = 0;
+    int r;
+    while ((r = in.read(buf, n, buf.length - n)) > 0) {
+      n += r;
+      if (n == buf.length) {
+        buf = Arrays.copyOf(buf, n * 2);
+      }
+    }
+    return load(ByteBuffer.wrap(buf, 0, n), minLength);
+  }
+
+  /** Cuts the words out of a buffer, from its position to its limit. */
+  static BoggleDictionary load (ByteBuffer bytes, int minLength) {
+    String[] words = new String[1 << 12];
+    int count = 0;
+    byte[] token = new byte[32];
+    int length = 0;
+    boolean letters = true;
+    for (int i = bytes.position(), end = bytes.limit(); i <= end; i++) {
+      int b = i < end ? bytes.get(i) : ' ';
+      if (b >= 0 && b <= ' ') { // whitespace or end of buffer
+        if (length > 0 && length >= minLength && letters) {
+          if (count == words.length) {
+            words = Arrays.copyOf(words, count * 2);
+          }
+          words[count++] = new String(token, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        length = 0;
+        letters = true;
+        continue;
+      }
+      if (b >= 'a' && b <= 'z') {
+        b -= 'a' - 'A';
+      } else if (b < 'A' || b > 'Z') {
+        letters = false;
+      }
+      if (length == token.length) {
+        token = Arrays.copyOf(token, length * 2);
+      }
+      token[length++] = (byte)b;
+    }
+    return new BoggleDictionary(Arrays.copyOf(words, count));
+  }
+}
@@ -0,0 +1,82 @@
+package cs671;
+
+/** A {@code TEXT} message that reports on submitted words.  Besides
+ * its text, which is what clients of the text protocol receive, the
+ * message keeps each word and the outcome of its submission, so that
+ * clients of the binary protocol can be sent a compact result that
+ * refers to the words by their identifiers instead.
+ *
+ * @author Chris Len
+ * @see BinaryProtocol
+ */
+public class WordResults extends BoggleMessage {
+
+  /** Outcome of a word submission. */
+  public static enum Status {
+    /** The word is valid and was found by the player */
+    FOUND("found"),
+    /** The word was already submitted */
+    ALREADY_SUBMITTED("already submitted"),
+    /** The word is not on the board */
+    NOT_ON_BOARD("not on the board"),
+    /** The word is not in the dictionary */
+    NOT_IN_DICTIONARY("not in the dictionary"),
+    /** The player is not in the current game */
+    NOT_PLAYING("not playing");
+
+    private final String description;
+
+    private Status (String description) {
+      this.description = description;
+    }
+
+    /** A short description of the outcome, such as "not on the
+     * board". */
+    public String description () {
+      return description;
+    }
+  }
+
+  private final String[] words;
+  private final Status[] status;
+
+  /** Creates a report on a single word.
+   *
+   * @param text the text of the message
+   * @param word the word submitted
+   * @param status the outcome of the submission
+   */
+  public WordResults (String text, String word, Status status) {
+    this(text, new String[] {word}, new Status[] {status});
+  }
+
+  /** Creates a report on several words.
+   *
+   * @param text the text of the message
+   * @param words the words submitted
+   * @param status the outcome of each submission, in the same order
+   * @throws IllegalArgumentException if the arrays differ in length
+   */
+  public WordResults (String text, String[] words, Status[] status) {
+    super(Type.TEXT, text);
+    if (words.length != status.length)
+      throw new IllegalArgumentException("One status per word is needed");
+    this.words = words;
+    this.status = status;
+  }
+
+  /** The number of words in this report. */
+  public int size () {
+    return words.length;
+  }
+
+  /** The {@code i}-th word of this report. */
+  public String word (int i) {
+    return words[i];
+  }
+
+  /** The outcome of the {@code i}-th word of this report. */
+  public Status status (int i) {
+    return status[i];
+  }
+}
@@ -0,0 +1,83 @@
+package cs671;
+
+import java.io.IOException;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Searches and rattles of dice boards of several sizes.  Boards are
+ * seeded, so that every run measures the same boards, and searched on
+ * the benchmark thread, so that their allocation is counted.
+ * {@code containsString} looks up the words of the board, each
+ * followed by the same word reversed, which is usually not on it.
+ *
+ * @author Chris Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BoardBenchmark {
+
+  /** Width and height of the boards */
+  @Param({"4", "5", "6"})
+  public int size;
+
+  private BoggleDictionary dict;
+  /** A board that is searched and never rattled */
+  private DiceBoggleBoard board;
+  /** A board that is rattled */
+  private DiceBoggleBoard rattled;
+  private String[] strings;
+  private int i;
+
+  @Setup
+  public void setup () throws IOException {
+    dict = Fixtures.dictionary();
+    Die[] dice = Fixtures.dice();
+    board = new DiceBoggleBoard(size, size, dice, 42L);
+    board.setParallelThreshold(Integer.MAX_VALUE); // on this thread
+    board.rattle();
+    SortedSet<String> found = board.allWords(dict);
+    if (found.isEmpty()) {
+      strings = new String[] {"CAT", "TAC"};
+    } else {
+      strings = new String[found.size() * 2];
+      int k = 0;
+      for (String w : found) {
+        strings[k++] = w;
+        strings[k++] = new StringBuilder(w).reverse().toString();
+      }
+    }
+    rattled = new DiceBoggleBoard(size, size, dice, 42L);
+  }
+
+  @Benchmark
+  public boolean containsString () {
+    i = i + 1 == strings.length ? 0 : i + 1;
+    return board.containsString(strings[i]);
+  }
+
+  @Benchmark
+  public SortedSet<String> allWords () {
+    return board.allWords(dict);
+  }
+
+  @Benchmark
+  public char rattle () {
+    rattled.rattle();
+    return rattled.letterAt(0, 0);
+  }
+}
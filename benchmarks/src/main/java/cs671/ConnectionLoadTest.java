@@ -0,0 +1,121 @@
+package cs671;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Connects many idle players to an in-process {@code BoggleServer}
+ * and reports how many threads and how much heap the server needs to
+ * hold them.  Each client joins the game and then stays connected
+ * without sending anything else, which is the common case for a busy
+ * server between games.  It is not a JMH benchmark; it runs from the
+ * jar of the benchmarks with
+ * {@code java -cp benchmarks/target/benchmarks.jar cs671.ConnectionLoadTest}.
+ *
+ * @author Chris Len
+ * @see BoggleServer
+ */
+public class ConnectionLoadTest {
+
+  private ConnectionLoadTest () { }
+
+  private static void usage () {
+    System.out.println
+      ("Options:\n"+
+       "-clients <number> : number of connected players\n"+
+       "-port <number> : server port\n"+
+       "-virtual : virtual threads, with a writer thread per connection\n"+
+       "   (Java 21 or later); otherwise, writers are pooled\n"+
+       "-nio <number> : non-blocking server with the given number of event loops\n\n"+
+       "default is: -clients 2000 -port 4444");
+  }
+
+  private static void report (String when) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    System.gc();
+    System.out.printf("%-10s %6d live threads, %6d peak, %8.1f MB heap%n", when,
+                      threads.getThreadCount(), threads.getPeakThreadCount(),
+                      memory.getHeapMemoryUsage().getUsed() / 1048576.0);
+  }
+
+  /** Runs the load test. */
+  public static void main (String[] args) throws Exception {
+    int clients = 2000;
+    int port = 4444;
+    int loops = 0;
+    boolean virtual = false;
+    for (int i=0; i<args.length; i++) {
+      try {
+        if (args[i].equals("-clients")) {
+          clients = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-port")) {
+          port = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-nio")) {
+          loops = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-virtual")) {
+          virtual = true;
+        } else {
+          usage();
+          return;
+        }
+      } catch (IndexOutOfBoundsException | NumberFormatException e) {
+        usage();
+        return;
+      }
+    }
+    Die[] dice = Die.makeDice(new java.io.StringReader("ABCDEF\nGHIJKL\n"));
+    BoggleDictionary dict = new BoggleDictionary(Arrays.asList("ABC"));
+    BoggleGameManager game = new BoggleGameManager(4, 4, dict, dice);
+    NioBoggleServer nio = null;
+    BoggleServer server = null;
+    if (loops > 0) {
+      nio = new NioBoggleServer(port, game, loops);
+      nio.start();
+    } else {
+      server = new BoggleServer(port, game, virtual);
+      server.start();
+    }
+    report("idle");
+    java.io.PrintStream console = System.out;
+    System.setOut(new java.io.PrintStream(new OutputStream() {
+        @Override public void write (int b) { }
+      }));
+    long start = System.nanoTime();
+    List<Socket> sockets = new ArrayList<>(clients);
+    try {
+      for (int i = 0; i < clients; i++) {
+        Socket s = new Socket("localhost", port);
+        s.getOutputStream().write(("JOIN:player" + i + "\n").getBytes(StandardCharsets.UTF_8));
+        sockets.add(s);
+      }
+      // Wait until all the players joined or the count stops moving
+      int joined = -1;
+      long moved = System.nanoTime();
+      while (game.playerCount() < clients
+             && System.nanoTime() - moved < 2_000_000_000L) {
+        if (game.playerCount() != joined) {
+          joined = game.playerCount();
+          moved = System.nanoTime();
+        }
+        Thread.sleep(50);
+      }
+    } finally {
+      System.setOut(console);
+    }
+    System.out.printf("%d of %d players joined in %d ms%n", game.playerCount(),
+                      clients, (System.nanoTime() - start) / 1000000);
+    report("connected");
+    if (nio != null)
+      nio.stop();
+    if (server != null)
+      server.stop();
+    System.exit(0);
+  }
+}
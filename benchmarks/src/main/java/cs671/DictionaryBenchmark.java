@@ -0,0 +1,74 @@
+package cs671;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Lookups in the dictionary of the game.  Each operation looks up
+ * the next string of a sample: every other word of the dictionary,
+ * each followed by a string that is not a word.  Prefix lookups use
+ * the first three letters of the same strings.
+ *
+ * @author Chris Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DictionaryBenchmark {
+
+  private BoggleDictionary dict;
+  private String[] lookups;
+  private String[] prefixes;
+  private int i;
+
+  @Setup
+  public void setup () throws IOException {
+    dict = Fixtures.dictionary();
+    List<String> sample = new ArrayList<>();
+    int n = 0;
+    for (String w : dict) {
+      if (n++ % 2 == 0) {
+        sample.add(w);
+        sample.add(w + "Q");
+      }
+    }
+    lookups = sample.toArray(new String[0]);
+    prefixes = new String[lookups.length];
+    for (int k = 0; k < lookups.length; k++)
+      prefixes[k] = lookups[k].substring(0, Math.min(3, lookups[k].length()));
+  }
+
+  private int next () {
+    i = i + 1 == lookups.length ? 0 : i + 1;
+    return i;
+  }
+
+  @Benchmark
+  public int find () {
+    return dict.find(lookups[next()]);
+  }
+
+  @Benchmark
+  public boolean hasWord () {
+    return dict.hasWord(lookups[next()]);
+  }
+
+  @Benchmark
+  public boolean hasPrefix () {
+    return dict.hasPrefix(prefixes[next()]);
+  }
+}
@@ -0,0 +1,89 @@
+package cs671;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Loading the dictionary of the game from files.  Three paths are
+ * measured: the original one ({@code Scanner}, upper case conversion
+ * into a {@code HashSet}, then the dictionary constructor), {@code
+ * WordListLoader} on the same word list, and loading a snapshot of
+ * the dictionary.  The files are copies of {@code words.txt} and of
+ * its snapshot, written to a temporary directory before the runs.
+ *
+ * @author Chris Len
+ * @see WordListLoader
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DictionaryLoadBenchmark {
+
+  private File words;
+  private File snapshot;
+
+  @Setup
+  public void setup () throws IOException {
+    words = File.createTempFile("words", ".txt");
+    try (InputStream in = BoggleDictionary.class.getResourceAsStream("/words.txt")) {
+      if (in == null)
+        throw new IOException("Missing resource /words.txt");
+      Files.copy(in, words.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    snapshot = File.createTempFile("words", ".dict");
+    try (OutputStream out = new FileOutputStream(snapshot)) {
+      Fixtures.dictionary().save(out);
+    }
+  }
+
+  @TearDown
+  public void tearDown () {
+    words.delete();
+    snapshot.delete();
+  }
+
+  @Benchmark
+  public BoggleDictionary scanner () throws IOException {
+    Set<String> set = new HashSet<>();
+    try (Scanner in = new Scanner(words)) {
+      while (in.hasNext()) {
+        String w = in.next();
+        if (w.length() >= 3)
+          set.add(w.toUpperCase());
+      }
+    }
+    return new BoggleDictionary(set);
+  }
+
+  @Benchmark
+  public BoggleDictionary loader () throws IOException {
+    return WordListLoader.load(words, 3);
+  }
+
+  @Benchmark
+  public BoggleDictionary snapshot () throws IOException {
+    return BoggleDictionary.load(snapshot);
+  }
+}
@@ -0,0 +1,57 @@
+package cs671;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/** The dictionary and dice of the benchmarks: the word list and dice
+ * packaged with the game, loaded once per benchmark JVM.
+ *
+ * @author Chris Len
+ */
+final class Fixtures {
+
+  private static BoggleDictionary dict;
+  private static Die[] dice;
+
+  private Fixtures () { }
+
+  /** The dictionary of {@code words.txt}, with words of 3 letters or more */
+  static synchronized BoggleDictionary dictionary () throws IOException {
+    if (dict == null) {
+      try (InputStream in = open("/words.txt")) {
+        dict = WordListLoader.load(in, 3);
+      }
+    }
+    return dict;
+  }
+
+  /** The dice of {@code dice.txt} */
+  static synchronized Die[] dice () throws IOException {
+    if (dice == null) {
+      try (InputStream in = open("/dice.txt")) {
+        dice = Die.makeDice(new InputStreamReader(in, StandardCharsets.US_ASCII));
+      }
+    }
+    return dice.clone();
+  }
+
+  /** A player that ignores the messages it is sent */
+  static BogglePlayer player (final String name) {
+    return new BogglePlayer() {
+      @Override public String getName () {
+        return name;
+      }
+
+      @Override public void sendMessage (BoggleMessage msg) { }
+    };
+  }
+
+  private static InputStream open (String name) throws IOException {
+    InputStream in = BoggleDictionary.class.getResourceAsStream(name);
+    if (in == null)
+      throw new IOException("Missing resource " + name);
+    return in;
+  }
+}
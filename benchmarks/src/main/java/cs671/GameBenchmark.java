@@ -0,0 +1,149 @@
+package cs671;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Word submissions and scoring in a game of many players.  Games are
+ * driven from the benchmark thread, which stands for the room's
+ * thread, with timers off; boards come from a seeded pool and have at
+ * least 50 words.
+ *
+ * <p>{@code submitWord} has the players submit, in turn, the words of
+ * the board, each followed by a dictionary word that is not on it.
+ * Since a word is only accepted once per player, it runs in batches of
+ * {@code BATCH} submissions, each in a new game, and its score is the
+ * time of a batch: half of the submissions are accepted words and half
+ * are misses looked up in the dictionary, with no duplicates.  Boards
+ * have enough words for a batch to use distinct pairs of players and
+ * words.  {@code endGame} scores a game in which each player has found 20
+ * words of the board; the game is started and the words submitted
+ * before each operation, outside the measured time.  The gc profiler
+ * counts allocation over whole iterations, so for {@code endGame} its
+ * bytes per operation include those of this preparation.
+ *
+ * @author Chris Len
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GameBenchmark {
+
+  /** Words submitted by each player before a game ends */
+  private static final int WORDS_PER_PLAYER = 20;
+
+  /** Submissions timed together by {@code submitWord} */
+  private static final int BATCH = 10000;
+
+  /** A game with registered players */
+  @State(Scope.Thread)
+  public static class Game {
+    /** Players of the game */
+    @Param({"100", "1000"})
+    public int players;
+
+    BoardPool boards;
+    BoggleGameManager game;
+    List<BogglePlayer> registered;
+
+    @Setup(Level.Trial)
+    public void create () throws IOException {
+      boards = new BoardPool(4, 4, Fixtures.dice(), Fixtures.dictionary(),
+                             BoardPool.DEFAULT_CAPACITY, 50, 42L);
+      game = new BoggleGameManager(boards);
+      game.setTimer(0);
+      registered = new ArrayList<>(players);
+      for (int i = 0; i < players; i++) {
+        BogglePlayer p = Fixtures.player("player" + i);
+        game.register(p);
+        registered.add(p);
+      }
+    }
+
+    /** Starts a game: the last player to be ready starts it */
+    void begin () {
+      for (BogglePlayer p : registered)
+        game.start(p);
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose () {
+      boards.stop();
+    }
+  }
+
+  /** A new game on for each batch, with the words to submit */
+  @State(Scope.Thread)
+  public static class Playing extends Game {
+    String[] candidates;
+    int i;
+
+    @Setup(Level.Iteration)
+    public void play () throws IOException {
+      if (game.playing())
+        game.endGame(true);
+      begin();
+      i = -1;
+      Set<String> words = game.getBoard().words();
+      List<String> mixed = new ArrayList<>();
+      java.util.Iterator<String> misses = Fixtures.dictionary().iterator();
+      for (String w : words) {
+        mixed.add(w);
+        String miss;
+        do {
+          miss = misses.next();
+        } while (words.contains(miss));
+        mixed.add(miss);
+      }
+      candidates = mixed.toArray(new String[0]);
+    }
+  }
+
+  /** A game on, in which every player has found words, ready to end */
+  @State(Scope.Thread)
+  public static class Ending extends Game {
+    @Setup(Level.Invocation)
+    public void play () {
+      begin();
+      String[] words = game.getBoard().words().toArray(new String[0]);
+      for (int p = 0; p < players; p++) {
+        for (int w = 0; w < WORDS_PER_PLAYER && words.length > 0; w++)
+          game.submitWord(registered.get(p), words[(p * 7 + w) % words.length]);
+      }
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 20, batchSize = BATCH)
+  @Measurement(iterations = 50, batchSize = BATCH)
+  public int submitWord (Playing s) {
+    s.i = s.i + 1 == s.players * s.candidates.length ? 0 : s.i + 1;
+    s.game.submitWord(s.registered.get(s.i % s.players),
+                      s.candidates[s.i / s.players % s.candidates.length]);
+    return s.i;
+  }
+
+  @Benchmark
+  public boolean endGame (Ending s) {
+    return s.game.endGame(true);
+  }
+}
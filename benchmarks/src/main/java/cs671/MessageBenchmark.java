@@ -0,0 +1,53 @@
+package cs671;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Parsing and printing of protocol messages: a {@code WORD} line,
+ * parsed from a string as {@code BoggleMessage.parse} does and from
+ * received bytes as the servers do.
+ *
+ * @author Chris Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageBenchmark {
+
+  private final String line = "WORD:QUESTIONABLE";
+  private final BoggleMessage message
+    = new BoggleMessage(BoggleMessage.Type.WORD, "QUESTIONABLE");
+  private final ByteBuffer received
+    = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII));
+  private final MessageParser parser = new MessageParser();
+
+  @Benchmark
+  public BoggleMessage parse () throws BoggleMessage.Exception {
+    return BoggleMessage.parse(line);
+  }
+
+  @Benchmark
+  public String toLine () { // BoggleMessage.toString
+    return message.toString();
+  }
+
+  @Benchmark
+  public CharSequence parseBytes () throws BoggleMessage.Exception {
+    received.rewind();
+    parser.parse(received);
+    return parser.body();
+  }
+}
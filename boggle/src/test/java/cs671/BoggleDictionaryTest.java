@@ -0,0 +1,96 @@
+package cs671;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Saving and loading dictionary snapshots.
+ *
+ * @author Chris Len
+ */
+public class BoggleDictionaryTest {
+
+  /** Bytes before the nodes of a snapshot: five integers */
+  private static final int HEADER = 5 * 4;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File save (BoggleDictionary dict) throws IOException {
+    File f = folder.newFile("words" + BoggleDictionary.SNAPSHOT_SUFFIX);
+    try (OutputStream out = new FileOutputStream(f)) {
+      dict.save(out);
+    }
+    return f;
+  }
+
+  private static BoggleDictionary words () {
+    return new BoggleDictionary(Arrays.asList("CAT", "CATS", "DOG", "DOGS"));
+  }
+
+  private static void assertRejected (File f) {
+    try {
+      BoggleDictionary.load(f);
+      fail("Damaged snapshot loaded");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void loadsSavedSnapshot () throws IOException {
+    BoggleDictionary dict = BoggleDictionary.load(save(words()));
+    assertEquals(4, dict.size());
+    assertTrue(dict.hasWord("CATS"));
+    assertTrue(dict.hasPrefix("DO"));
+    int n = 0;
+    for (String w : dict)
+      n++;
+    assertEquals(4, n);
+  }
+
+  @Test
+  public void rejectsSelfReferencingNode () throws IOException {
+    File f = save(words());
+    try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+      raf.seek(HEADER + 4);
+      int first = raf.readInt(); // first child of the root, which has children
+      raf.seek(HEADER + 8L * first + 4);
+      raf.writeInt(first);
+    }
+    assertRejected(f);
+  }
+
+  @Test
+  public void rejectsRootAsChild () throws IOException {
+    File f = save(words());
+    try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+      raf.seek(HEADER + 4);
+      raf.writeInt(0);
+    }
+    assertRejected(f);
+  }
+
+  @Test
+  public void rejectsChildOutsideGraph () throws IOException {
+    File f = save(words());
+    int count;
+    try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+      raf.seek(16);
+      count = raf.readInt();
+      raf.seek(HEADER + 4);
+      raf.writeInt(count);
+    }
+    assertRejected(f);
+  }
+}